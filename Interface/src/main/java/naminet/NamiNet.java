@@ -0,0 +1,10 @@
+//main class
+
+package naminet;
+
+public class NamiNet{
+    public static void main(String[] args){
+        NeuralNetwork loadedModel = ModelSaver.loadInference("naminet_model.bin");     //only predicting here, no optimizer state
+        new NamiNetGUI(loadedModel);
+    }
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 //swing interface for NamiNet
 
+package naminet;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
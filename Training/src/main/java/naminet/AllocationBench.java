@@ -0,0 +1,53 @@
+//counts heap bytes allocated per training step (checks the workspace mode)
+
+package naminet;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class AllocationBench{
+    public static void main(String[] args){
+        int steps = 500;
+        int batchSize = 32;
+        Random rand = new Random(42);
+
+        //synthetic MNIST-shaped data, no csv needed
+        double[][] inputs = new double[batchSize][784];
+        double[][] labels = new double[batchSize][10];
+        for(int n=0; n<batchSize; n++){
+            for(int j=0; j<784; j++){
+                inputs[n][j] = rand.nextDouble();
+            }
+            labels[n][rand.nextInt(10)] = 1.0;
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for(boolean workspace : new boolean[]{false, true}){
+            NeuralNetwork naminet = new NeuralNetwork(new int[]{784, 128, 64, 10}, new double[]{0.1, 0.05, 0.0});
+            naminet.setWorkspaceMode(workspace);
+
+            //warm up so buffers exist and the JIT has settled
+            for(int i=0; i<steps; i++){
+                naminet.train(inputs[i % batchSize], labels[i % batchSize], 0.001);
+                naminet.trainBatch(inputs, labels, 0.001);
+            }
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            for(int i=0; i<steps; i++){
+                naminet.train(inputs[i % batchSize], labels[i % batchSize], 0.001);
+            }
+            long perSample = (threads.getThreadAllocatedBytes(thread) - before) / steps;
+
+            before = threads.getThreadAllocatedBytes(thread);
+            for(int i=0; i<steps; i++){
+                naminet.trainBatch(inputs, labels, 0.001);
+            }
+            long perBatch = (threads.getThreadAllocatedBytes(thread) - before) / steps;
+
+            System.out.printf("workspace %-5s - train: %,d bytes/sample, trainBatch(%d): %,d bytes/batch%n",
+                                workspace, perSample, batchSize, perBatch);
+        }
+    }
+}
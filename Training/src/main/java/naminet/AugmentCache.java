@@ -0,0 +1,189 @@
+//pre-augmented training epochs in one binary file, so retraining with the same augmentation costs no CPU for it
+//  java -cp target/classes naminet.AugmentCache <epochs> [file] [seed]      (writes naminet_augmented.bin by default)
+//
+//layout: a 32 byte header (magic, version, epochs, samples, pixels, seed), then every epoch in its
+//shuffled order, one record per sample: the label byte followed by the augmented + smoothed pixels as 0-255
+
+package naminet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class AugmentCache implements AutoCloseable{
+    public static final String DEFAULT_PATH = "naminet_augmented.bin";
+    private static final int MAGIC = 0x4E414147;    // "NAAG"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+
+    private final FileChannel channel;
+    private final int epochs;
+    private final int count;
+    private final int pixelCount;
+    private final long seed;
+
+    private AugmentCache(FileChannel channel, int epochs, int count, int pixelCount, long seed){
+        this.channel = channel;
+        this.epochs = epochs;
+        this.count = count;
+        this.pixelCount = pixelCount;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException{
+        int epochs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String path = args.length > 1 ? args[1] : DEFAULT_PATH;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        Dataset dataset = Trainer.loadDataset();
+        System.out.println("Loaded: " + dataset.size() + " samples.");
+        long start = System.currentTimeMillis();
+        write(dataset, epochs, seed, Runtime.getRuntime().availableProcessors(), path);
+        System.out.printf("Wrote %d augmented epochs to %s in %.2f seconds. (seed %d)%n",
+                            epochs, path, (System.currentTimeMillis() - start) / 1000.0, seed);
+    }
+
+    // augments epochs passes over dataset exactly like the live pipeline would with this seed
+    public static void write(Dataset dataset, int epochs, long seed, int workers, String path) throws IOException, InterruptedException{
+        int pixelCount = dataset.pixelCount();
+        try(AugmentPipeline pipeline = new AugmentPipeline(dataset, 256, epochs, workers, 4 * workers, seed);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(epochs);
+            out.writeInt(dataset.size());
+            out.writeInt(pixelCount);
+            out.writeLong(seed);
+            out.writeInt(0);    //pad to HEADER
+
+            byte[] record = new byte[1 + pixelCount];
+            for(int b=0; b<pipeline.batchesPerEpoch() * epochs; b++){
+                BatchSource.Batch batch = pipeline.next();
+                for(int n=0; n<batch.inputs.length; n++){
+                    record[0] = (byte) Trainer.argMax(batch.labels[n]);
+                    double[] input = batch.inputs[n];
+                    for(int p=0; p<pixelCount; p++){
+                        double v = Math.max(0.0, Math.min(1.0, input[p]));
+                        record[1 + p] = (byte) Math.round(v * 255.0);
+                    }
+                    out.write(record);
+                }
+            }
+        }
+    }
+
+    public static AugmentCache open(String path) throws IOException{
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while(header.hasRemaining() && channel.read(header) >= 0){}
+        header.flip();
+        if(header.remaining() < HEADER || header.getInt() != MAGIC || header.getInt() != VERSION){
+            channel.close();
+            throw new IOException(path + " is not an augmented dataset cache");
+        }
+        int epochs = header.getInt();
+        int count = header.getInt();
+        int pixelCount = header.getInt();
+        long seed = header.getLong();
+        if(channel.size() < HEADER + (long) epochs * count * (1 + pixelCount)){
+            channel.close();
+            throw new IOException(path + " is truncated");
+        }
+        return new AugmentCache(channel, epochs, count, pixelCount, seed);
+    }
+
+    public int epochs(){
+        return epochs;
+    }
+
+    public int size(){
+        return count;
+    }
+
+    public int pixelCount(){
+        return pixelCount;
+    }
+
+    public long seed(){
+        return seed;
+    }
+
+    // the first samples of every stored epoch in batches, wrapping around if epochs is more than the file holds
+    public BatchSource batches(int samples, int batchSize, int epochs){
+        return new Batches(Math.min(samples, count), batchSize, epochs);
+    }
+
+    @Override
+    public void close(){
+        try{
+            channel.close();
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    //reads straight from the mapped file, one stored epoch mapped at a time
+    private class Batches implements BatchSource{
+        private final int samples;
+        private final int batchSize;
+        private final int batchesPerEpoch;
+        private final int totalBatches;
+        private int index;
+        private int mappedEpoch = -1;
+        private MappedByteBuffer mapped;
+
+        Batches(int samples, int batchSize, int epochs){
+            this.samples = samples;
+            this.batchSize = batchSize;
+            this.batchesPerEpoch = (samples + batchSize - 1) / batchSize;
+            this.totalBatches = batchesPerEpoch * epochs;
+        }
+
+        @Override
+        public int batchesPerEpoch(){
+            return batchesPerEpoch;
+        }
+
+        @Override
+        public Batch next(){
+            if(index >= totalBatches){
+                throw new IllegalStateException("no batches left");
+            }
+            int epoch = index / batchesPerEpoch;
+            int start = (index % batchesPerEpoch) * batchSize;
+            int size = Math.min(batchSize, samples - start);
+            index++;
+
+            int stored = epoch % AugmentCache.this.epochs;
+            if(stored != mappedEpoch){
+                long recordBytes = 1 + pixelCount;
+                try{
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + (long) stored * count * recordBytes, count * recordBytes);
+                }catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
+                mappedEpoch = stored;
+            }
+
+            double[][] inputs = new double[size][pixelCount];
+            double[][] labels = new double[size][10];
+            for(int n=0; n<size; n++){
+                int offset = (start + n) * (1 + pixelCount);
+                labels[n][mapped.get(offset)] = 1.0;
+                double[] input = inputs[n];
+                for(int p=0; p<pixelCount; p++){
+                    input[p] = (mapped.get(offset + 1 + p) & 0xFF) / 255.0;
+                }
+            }
+            return new Batch(epoch + 1, inputs, labels);
+        }
+
+        @Override
+        public void close(){
+            AugmentCache.this.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+//augments training batches ahead of the trainer on background threads
+
+package naminet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AugmentPipeline implements BatchSource{
+
+    private final Dataset dataset;
+    private final int batchSize;
+    private final int batchesPerEpoch;
+    private final int totalBatches;
+    private final long seed;
+    private final ExecutorService workers;
+    private final Semaphore slots;      // batches being built or waiting, at most depth
+    private final AtomicInteger nextToBuild = new AtomicInteger();
+    private final Map<Integer, Batch> ready = new HashMap<>();    // guarded by itself
+    private final Map<Integer, int[]> orders = new HashMap<>();   // shuffled order per epoch, guarded by itself
+    private int nextToHand;
+    private volatile Throwable failure;
+
+    // worker threads augment batches in the background, up to depth batches ahead of next()
+    public AugmentPipeline(Dataset dataset, int batchSize, int epochs, int workers, int depth, long seed){
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.batchesPerEpoch = (dataset.size() + batchSize - 1) / batchSize;
+        this.totalBatches = batchesPerEpoch * epochs;
+        this.seed = seed;
+        this.slots = new Semaphore(depth);
+        this.workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "augment-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for(int i=0; i<workers; i++){
+            this.workers.submit(this::work);
+        }
+    }
+
+    @Override
+    public int batchesPerEpoch(){
+        return batchesPerEpoch;
+    }
+
+    // waits only if the workers are behind
+    @Override
+    public Batch next() throws InterruptedException{
+        Batch batch;
+        synchronized(ready){
+            while(!ready.containsKey(nextToHand)){
+                if(failure != null){
+                    throw new IllegalStateException("augmentation worker failed", failure);
+                }
+                ready.wait();
+            }
+            batch = ready.remove(nextToHand++);
+        }
+        slots.release();    //room for one more batch
+        return batch;
+    }
+
+    @Override
+    public void close(){
+        workers.shutdownNow();
+    }
+
+    private void work(){
+        double[] pixels = new double[dataset.pixelCount()];     //normalized image before augmenting
+        try{
+            while(true){
+                slots.acquire();
+                int index = nextToBuild.getAndIncrement();
+                if(index >= totalBatches){
+                    slots.release();
+                    return;
+                }
+                Batch batch = build(index, pixels);
+                synchronized(ready){
+                    ready.put(index, batch);
+                    ready.notifyAll();
+                }
+            }
+        }catch(InterruptedException e){
+            //closed
+        }catch(Throwable t){
+            failure = t;
+            synchronized(ready){
+                ready.notifyAll();
+            }
+        }
+    }
+
+    private Batch build(int index, double[] pixels){
+        int epoch = index / batchesPerEpoch;
+        int start = (index % batchesPerEpoch) * batchSize;
+        int size = Math.min(batchSize, dataset.size() - start);
+        int[] order = orderFor(epoch);
+        SplittableRandom rand = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (index + 1)));  //own stream per batch, whichever worker builds it
+
+        double[][] inputs = new double[size][];
+        double[][] labels = new double[size][10];
+        for(int n=0; n<size; n++){
+            int sample = order[start + n];
+
+            //augment the images first
+            double[] augmentedInput = Augment.applyRandom(dataset.input(sample, pixels), rand);
+            inputs[n] = Augment.smooth(augmentedInput);
+            dataset.oneHot(sample, labels[n]);
+        }
+        return new Batch(epoch + 1, inputs, labels);
+    }
+
+    //every epoch's order comes from its own seed, so it can be rebuilt if it was dropped already
+    private int[] orderFor(int epoch){
+        synchronized(orders){
+            int[] order = orders.get(epoch);
+            if(order == null){
+                order = new int[dataset.size()];
+                for(int i=0; i<order.length; i++) order[i] = i;
+                shuffle(order, new SplittableRandom(seed + epoch));
+                orders.remove(epoch - 2);   //only the current and previous epoch are still being built
+                orders.put(epoch, order);
+            }
+            return order;
+        }
+    }
+
+    private static void shuffle(int[] array, SplittableRandom rand){   //Fisher-Yates
+        for(int i=array.length-1; i>0; i--){
+            int j = rand.nextInt(i + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
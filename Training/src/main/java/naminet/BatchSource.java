@@ -0,0 +1,26 @@
+//where the trainer's shuffled, augmented batches come from (augmented live or read back from a cache file)
+
+package naminet;
+
+public interface BatchSource extends AutoCloseable{
+
+    // one ready-to-train batch
+    public static class Batch{
+        public final int epoch;         // 1-based like the trainer's
+        public final double[][] inputs; // augmented + smoothed
+        public final double[][] labels; // one-hot
+        Batch(int epoch, double[][] inputs, double[][] labels){
+            this.epoch = epoch;
+            this.inputs = inputs;
+            this.labels = labels;
+        }
+    }
+
+    int batchesPerEpoch();
+
+    // the next batch in order, epoch by epoch
+    Batch next() throws InterruptedException;
+
+    @Override
+    void close();
+}
@@ -1,4 +1,6 @@
 //container for data samples
+package naminet;
+
 public class DataSample {
     public double[] inputs;
     public double[] labels;
@@ -0,0 +1,80 @@
+//compact training set: raw 0-255 pixels of every image in one byte[], labels in another
+//(a few hundred bytes per sample instead of a double[784] + double[10] each)
+
+package naminet;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class Dataset{
+    private final byte[] pixels;    // image i starts at i * pixelCount
+    private final byte[] labels;
+    private final int count;
+    private final int pixelCount;
+
+    public Dataset(byte[] pixels, byte[] labels, int pixelCount){
+        this.pixels = pixels;
+        this.labels = labels;
+        this.count = labels.length;
+        this.pixelCount = pixelCount;
+    }
+
+    // straight byte copy out of the mapped IDX files
+    public static Dataset fromIdx(MNISTLoader.IdxSet set){
+        byte[] pixels = new byte[set.size() * set.pixelCount()];
+        byte[] labels = new byte[set.size()];
+        set.copyImages(pixels);
+        set.copyLabels(labels);
+        return new Dataset(pixels, labels, set.pixelCount());
+    }
+
+    // packs already normalized samples (e.g. from the csv) back into bytes
+    public static Dataset fromSamples(List<MNISTLoader.Sample> samples){
+        int count = samples.size();
+        int pixelCount = count > 0 ? samples.get(0).input.length : 0;
+        byte[] pixels = new byte[count * pixelCount];
+        byte[] labels = new byte[count];
+        for(int i=0; i<count; i++){
+            MNISTLoader.Sample sample = samples.get(i);
+            for(int p=0; p<pixelCount; p++){
+                pixels[i * pixelCount + p] = (byte) Math.round(sample.input[p] * 255.0);
+            }
+            labels[i] = (byte) sample.label;
+        }
+        return new Dataset(pixels, labels, pixelCount);
+    }
+
+    public int size(){
+        return count;
+    }
+
+    public int pixelCount(){
+        return pixelCount;
+    }
+
+    public int label(int index){
+        return labels[index];
+    }
+
+    // normalized (0-1) pixels of one image, written into out
+    public double[] input(int index, double[] out){
+        int offset = index * pixelCount;
+        for(int p=0; p<pixelCount; p++){
+            out[p] = (pixels[offset + p] & 0xFF) / 255.0;
+        }
+        return out;
+    }
+
+    // one-hot label of one image, written into out
+    public double[] oneHot(int index, double[] out){
+        Arrays.fill(out, 0.0);
+        out[labels[index]] = 1.0;
+        return out;
+    }
+
+    // the first count samples (shares the pixel array)
+    public Dataset subset(int count){
+        byte[] labels = Arrays.copyOf(this.labels, count);
+        return new Dataset(pixels, labels, pixelCount);
+    }
+}
@@ -0,0 +1,273 @@
+package naminet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class MNISTLoader{
+    
+    // A simple data holder
+    public static class Sample{
+        public double[] input;  // 784 pixels
+        public int label;       // 0-9
+        public Sample(double[] input, int label){
+            this.input = input;
+            this.label = label;
+        }
+    }
+
+    public static List<Sample> loadMNISTCSV(String filePath) throws IOException{
+        Dataset parsed = loadMNISTCSVDataset(filePath, 1);
+
+        List<Sample> dataset = new ArrayList<>(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            dataset.add(new Sample(parsed.input(i, new double[CSV_PIXELS]), parsed.label(i)));
+        }
+        return dataset;
+    }
+
+    private static final int CSV_PIXELS = 784;
+
+    // Fast csv path: the file is memory-mapped and the digits are parsed straight out of the bytes
+    // into the dataset (no String per line or per field). With threads > 1 the file is cut into
+    // chunks at line boundaries and the chunks are parsed in parallel.
+    public static Dataset loadMNISTCSVDataset(String filePath, int threads) throws IOException{
+        MappedByteBuffer csv = map(filePath);
+        int end = csv.limit();
+        int start = nextLine(csv, 0, end);  // skip header row
+
+        // chunk c covers [bounds[c], bounds[c + 1]), every bound sits at the start of a line
+        int chunks = Math.max(1, threads);
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        for (int c = 1; c < chunks; c++) {
+            int guess = start + (int) ((long) (end - start) * c / chunks);
+            bounds[c] = Math.max(bounds[c - 1], nextLine(csv, guess - 1, end));
+        }
+        bounds[chunks] = end;
+
+        // count rows first so every chunk knows where its samples go
+        int[] firstRow = new int[chunks + 1];
+        for (int c = 0; c < chunks; c++) {
+            firstRow[c + 1] = firstRow[c] + countRows(csv, bounds[c], bounds[c + 1]);
+        }
+        int count = firstRow[chunks];
+        byte[] pixels = new byte[count * CSV_PIXELS];
+        byte[] labels = new byte[count];
+
+        if (chunks == 1) {
+            parseRows(csv, bounds[0], bounds[1], firstRow[0], pixels, labels);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(chunks);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (int c = 0; c < chunks; c++) {
+                    int chunk = c;
+                    tasks.add(pool.submit(() -> {
+                        parseRows(csv, bounds[chunk], bounds[chunk + 1], firstRow[chunk], pixels, labels);
+                        return null;
+                    }));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.get();
+                }
+            } catch (ExecutionException e) {
+                // fork/join wraps checked exceptions, dig the parse error back out
+                Throwable cause = e.getCause();
+                while (cause instanceof RuntimeException && cause.getCause() != null) cause = cause.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while parsing " + filePath);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        return new Dataset(pixels, labels, CSV_PIXELS);
+    }
+
+    // position right after the next '\n' at or after pos (end if there is none)
+    private static int nextLine(ByteBuffer csv, int pos, int end) {
+        while (pos < end && csv.get(pos) != '\n') pos++;
+        return Math.min(pos + 1, end);
+    }
+
+    // number of non-empty lines in [from, to)
+    private static int countRows(ByteBuffer csv, int from, int to) {
+        int rows = 0;
+        boolean inLine = false;
+        for (int pos = from; pos < to; pos++) {
+            byte b = csv.get(pos);
+            if (b == '\n') {
+                inLine = false;
+            } else if (!inLine && b != '\r') {
+                rows++;
+                inLine = true;
+            }
+        }
+        return rows;
+    }
+
+    // parses the rows in [from, to) into pixels/labels starting at sample row
+    private static void parseRows(ByteBuffer csv, int from, int to, int row, byte[] pixels, byte[] labels) throws IOException {
+        int pos = from;
+        while (pos < to) {
+            byte b = csv.get(pos);
+            if (b == '\n' || b == '\r') {   // blank line / line ending
+                pos++;
+                continue;
+            }
+
+            // label, then 784 pixels, all comma separated
+            int label = 0;
+            int offset = row * CSV_PIXELS;
+            for (int field = 0; field <= CSV_PIXELS; field++) {
+                int value = 0;
+                int digits = 0;
+                while (pos < to && (b = csv.get(pos)) >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    digits++;
+                    pos++;
+                }
+
+                boolean last = field == CSV_PIXELS;
+                boolean lineEnd = pos == to || b == '\n' || b == '\r';
+                int max = field == 0 ? 9 : 255;     // a label is a digit, the rest are pixels
+                if (digits == 0 || digits > 3 || value > max || (last ? !lineEnd : b != ',')) {
+                    throw new IOException("malformed csv row " + (row + 1) + " (field " + field + ")");
+                }
+                pos++;  // separator
+
+                if (field == 0) label = value;
+                else pixels[offset + field - 1] = (byte) value;
+            }
+
+            labels[row++] = (byte) label;
+        }
+    }
+
+    // Samples straight from the binary IDX files (train-images-idx3-ubyte + train-labels-idx1-ubyte).
+    // Both files are memory-mapped, a pixel is only read (and normalized) when it's asked for.
+    public static class IdxSet{
+        private final MappedByteBuffer images;
+        private final MappedByteBuffer labels;
+        private final int count;
+        private final int pixels;   // rows * cols, 784 for MNIST
+
+        private IdxSet(MappedByteBuffer images, MappedByteBuffer labels, int count, int pixels){
+            this.images = images;
+            this.labels = labels;
+            this.count = count;
+            this.pixels = pixels;
+        }
+
+        public int size(){
+            return count;
+        }
+
+        public int pixelCount(){
+            return pixels;
+        }
+
+        public int label(int index){
+            return labels.get(IDX_LABELS_HEADER + index);
+        }
+
+        // raw 0-255 value of one pixel
+        public int pixel(int index, int pixel){
+            return images.get(IDX_IMAGES_HEADER + index * pixels + pixel) & 0xFF;
+        }
+
+        // normalized (0-1) pixels of one image, written into out
+        public double[] input(int index, double[] out){
+            int offset = IDX_IMAGES_HEADER + index * pixels;
+            for (int i = 0; i < pixels; i++) {
+                out[i] = (images.get(offset + i) & 0xFF) / 255.0;
+            }
+            return out;
+        }
+
+        public double[] input(int index){
+            return input(index, new double[pixels]);
+        }
+
+        // bulk copies of the raw bytes (count * pixelCount image bytes, count label bytes)
+        public void copyImages(byte[] dst){
+            images.duplicate().position(IDX_IMAGES_HEADER).get(dst, 0, count * pixels);
+        }
+
+        public void copyLabels(byte[] dst){
+            labels.duplicate().position(IDX_LABELS_HEADER).get(dst, 0, count);
+        }
+
+        // copies everything out into the same Samples loadMNISTCSV gives
+        public List<Sample> toSamples(){
+            List<Sample> dataset = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                dataset.add(new Sample(input(i), label(i)));
+            }
+            return dataset;
+        }
+    }
+
+    private static final int IDX_IMAGES_MAGIC = 0x00000803;  // unsigned bytes, 3 dimensions
+    private static final int IDX_LABELS_MAGIC = 0x00000801;  // unsigned bytes, 1 dimension
+    private static final int IDX_IMAGES_HEADER = 16;         // magic, count, rows, cols
+    private static final int IDX_LABELS_HEADER = 8;          // magic, count
+
+    public static IdxSet loadMNISTIDX(String imagesPath, String labelsPath) throws IOException{
+        MappedByteBuffer images = map(imagesPath);
+        MappedByteBuffer labels = map(labelsPath);
+
+        // headers are big-endian ints
+        if (images.capacity() < IDX_IMAGES_HEADER || images.getInt(0) != IDX_IMAGES_MAGIC) {
+            throw new IOException(imagesPath + " is not an IDX image file");
+        }
+        if (labels.capacity() < IDX_LABELS_HEADER || labels.getInt(0) != IDX_LABELS_MAGIC) {
+            throw new IOException(labelsPath + " is not an IDX label file");
+        }
+
+        int count = images.getInt(4);
+        int rows = images.getInt(8);
+        int cols = images.getInt(12);
+        if (count <= 0 || rows <= 0 || cols <= 0) {
+            throw new IOException(imagesPath + ": bad dimensions " + count + " x " + rows + " x " + cols);
+        }
+        if (labels.getInt(4) != count) {
+            throw new IOException("image and label counts don't match (" + count + " vs " + labels.getInt(4) + ")");
+        }
+        // in long, so a header claiming more than the file holds can't wrap around into passing
+        long pixels = (long) rows * cols;
+        if (images.capacity() < IDX_IMAGES_HEADER + count * pixels || labels.capacity() < IDX_LABELS_HEADER + (long) count) {
+            throw new IOException("IDX files are truncated");
+        }
+
+        // a label past 9 would only fail much later, in Dataset.oneHot
+        for (int i = 0; i < count; i++) {
+            int label = labels.get(IDX_LABELS_HEADER + i) & 0xFF;
+            if (label > 9) {
+                throw new IOException(labelsPath + ": label " + label + " at index " + i + " is not a digit");
+            }
+        }
+
+        return new IdxSet(images, labels, count, (int) pixels);
+    }
+
+    private static MappedByteBuffer map(String filePath) throws IOException{
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;    // the mapping stays valid after the channel is closed
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+//trains the same network in double and in float on MNIST and compares accuracy and speed
+//  java --add-modules jdk.incubator.vector -cp target/classes naminet.PrecisionCheck [train samples] [epochs]      (exits with 1 if float falls more than 1% behind)
+//core's PrecisionParityTest checks the same on synthetic data in every build
+
+package naminet;
+
+import java.io.IOException;
+
+public class PrecisionCheck{
+    public static void main(String[] args) throws IOException{
+        int trainSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int batchSize = 32;
+        long seed = 42;
+
+        Dataset dataset = Trainer.loadDataset();
+        trainSize = Math.min(trainSize, dataset.size() * 4 / 5);
+        int testSize = Math.min(dataset.size() - trainSize, trainSize / 4);    //held out, right after the training part
+
+        double[][] inputs = new double[trainSize + testSize][dataset.pixelCount()];
+        double[][] labels = new double[trainSize + testSize][10];
+        for(int i=0; i<inputs.length; i++){
+            dataset.input(i, inputs[i]);
+            dataset.oneHot(i, labels[i]);
+        }
+
+        double[] accuracy = new double[2];
+        for(int p=0; p<2; p++){
+            boolean single = p == 1;
+            NeuralNetwork naminet = new NeuralNetwork(new int[]{784, 128, 64, 10}, new double[]{0.1, 0.05, 0.0},
+                                                      Optimizer.Adam::new, seed, single);
+            naminet.setWorkspaceMode(true);
+
+            double[][] batchInputs = new double[batchSize][];
+            double[][] batchLabels = new double[batchSize][];
+            long start = System.nanoTime();
+            for(int epoch=0; epoch<epochs; epoch++){
+                for(int from=0; from+batchSize<=trainSize; from+=batchSize){
+                    System.arraycopy(inputs, from, batchInputs, 0, batchSize);
+                    System.arraycopy(labels, from, batchLabels, 0, batchSize);
+                    naminet.trainBatch(batchInputs, batchLabels, 0.002);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            int correct = 0;
+            for(int i=trainSize; i<trainSize + testSize; i++){
+                if(Trainer.argMax(naminet.predict(inputs[i])) == Trainer.argMax(labels[i])) correct++;
+            }
+            accuracy[p] = 100.0 * correct / Math.max(1, testSize);
+            System.out.printf("%-6s - held-out accuracy %.2f%% (%d samples) - training %.2f s (%.0f samples/s)%n",
+                                single ? "float" : "double", accuracy[p], testSize, seconds, epochs * trainSize / seconds);
+        }
+
+        boolean parity = accuracy[1] >= accuracy[0] - 1.0;
+        System.out.println(parity ? "PASS: float matches double" : "FAIL: float is more than 1% behind double");
+        if(!parity) System.exit(1);
+    }
+}
@@ -0,0 +1,104 @@
+//post-training quantization: turns a trained double model into an int8 one (see QuantizedLayer) and reports
+//what it costs in accuracy against the original and what it saves in size and scoring time
+//  java --add-modules jdk.incubator.vector -cp "target/classes:target/lib/*" naminet.Quantizer [model] [out] [calibration samples] [evaluation samples]
+//defaults: naminet_model.bin, naminet_model_int8.bin, 1000, 10000 (calibrated on the first MNIST samples,
+//evaluated on the last ones); exits with 1 if int8 falls more than 1% behind
+//the server loads the int8 file like any other model
+
+package naminet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class Quantizer{
+    private static final int TIMING_RUNS = 5;   //scoring time is the best of these
+
+    public static void main(String[] args) throws IOException{
+        String modelPath = args.length > 0 ? args[0] : "naminet_model.bin";
+        String outPath = args.length > 1 ? args[1] : "naminet_model_int8.bin";
+        int calibrationSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int evaluationSize = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+
+        NeuralNetwork net = ModelSaver.loadInference(modelPath);
+        if(net == null) return;
+        if(net.floatNetwork() != null){
+            System.out.println(modelPath + " is a float32 model, quantize the double one");
+            return;
+        }
+
+        Dataset dataset = Trainer.loadDataset();
+        calibrationSize = Math.min(calibrationSize, dataset.size());
+        evaluationSize = Math.min(evaluationSize, dataset.size());
+        int pixels = dataset.pixelCount();
+
+        double[][] calibration = new double[calibrationSize][pixels];
+        for(int i=0; i<calibrationSize; i++){
+            dataset.input(i, calibration[i]);
+        }
+        long start = System.nanoTime();
+        InferenceModel quantized = new InferenceModel(QuantizedLayer.quantize(net.layers(), calibration));
+        System.out.printf("calibrated on %d samples in %.1f ms%n", calibrationSize, (System.nanoTime() - start) / 1e6);
+        ModelSaver.saveQuantized(quantized, outPath);
+
+        //what gets evaluated is the file read back, not the model in memory
+        InferenceModel int8 = ModelSaver.loadInferenceModel(outPath);
+        if(int8 == null) return;
+        InferenceModel reference = net.toInferenceModel();
+
+        int first = dataset.size() - evaluationSize;
+        double[] inputs = new double[evaluationSize * pixels];
+        double[] row = new double[pixels];
+        int[] labels = new int[evaluationSize];
+        for(int n=0; n<evaluationSize; n++){
+            System.arraycopy(dataset.input(first + n, row), 0, inputs, n * pixels, pixels);
+            labels[n] = dataset.label(first + n);
+        }
+
+        Predictions expected = reference.predictBatch(inputs, evaluationSize);
+        Predictions actual = int8.predictBatch(inputs, evaluationSize);
+        int correctDouble = 0, correctInt8 = 0, agree = 0;
+        double maxDelta = 0.0, sumDelta = 0.0;
+        for(int n=0; n<evaluationSize; n++){
+            if(expected.label(n) == labels[n]) correctDouble++;
+            if(actual.label(n) == labels[n]) correctInt8++;
+            if(expected.label(n) == actual.label(n)) agree++;
+            for(int c=0; c<expected.classes(); c++){
+                double delta = Math.abs(expected.probability(n, c) - actual.probability(n, c));
+                maxDelta = Math.max(maxDelta, delta);
+                sumDelta += delta;
+            }
+        }
+        double accuracyDouble = 100.0 * correctDouble / evaluationSize;
+        double accuracyInt8 = 100.0 * correctInt8 / evaluationSize;
+
+        double secondsDouble = bestTime(reference, inputs, evaluationSize);
+        double secondsInt8 = bestTime(int8, inputs, evaluationSize);
+        long bytesIn = Files.size(Path.of(modelPath));
+        long bytesOut = Files.size(Path.of(outPath));
+
+        System.out.printf("%n%d samples          double      int8%n", evaluationSize);
+        System.out.printf("accuracy          %7.2f%%  %7.2f%%   (%+.2f points)%n", accuracyDouble, accuracyInt8, accuracyInt8 - accuracyDouble);
+        System.out.printf("same label        %.2f%% of samples%n", 100.0 * agree / evaluationSize);
+        System.out.printf("probability delta max %.5f, mean %.6f%n", maxDelta, sumDelta / ((double) evaluationSize * expected.classes()));
+        System.out.printf("file              %7d B  %7d B   (%.1fx smaller)%n", bytesIn, bytesOut, bytesIn / (double) bytesOut);
+        System.out.printf("predictBatch      %7.2f us  %6.2f us per sample   (%.2fx, kernels: %s)%n",
+                          secondsDouble * 1e6 / evaluationSize, secondsInt8 * 1e6 / evaluationSize,
+                          secondsDouble / secondsInt8, DenseKernels.INSTANCE.name());
+
+        boolean close = accuracyInt8 >= accuracyDouble - 1.0;
+        System.out.println(close ? "PASS: int8 matches double" : "FAIL: int8 is more than 1% behind double");
+        if(!close) System.exit(1);
+    }
+
+    //seconds for the fastest of TIMING_RUNS passes over the samples (the first ones double as JIT warm-up)
+    private static double bestTime(InferenceModel model, double[] inputs, int count){
+        long best = Long.MAX_VALUE;
+        for(int run=0; run<TIMING_RUNS; run++){
+            long start = System.nanoTime();
+            model.predictBatch(inputs, count);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e9;
+    }
+}
@@ -1,7 +1,10 @@
 //runs the training process (caution)
 
+package naminet;
+
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Trainer{
     public static void main(String[] args) throws IOException{
@@ -24,18 +27,19 @@ public class Trainer{
             return;
         }
         
-        //load data from dataset
-        List<MNISTLoader.Sample> rawSamples = MNISTLoader.loadMNISTCSV("mnist_train.csv");
-        List<DataSample> dataset = new ArrayList<>();
-
-        for (MNISTLoader.Sample sample : rawSamples) {
-            // Convert label to one-hot
-            double[] labelOneHot = new double[10];
-            labelOneHot[sample.label] = 1.0;
-
-            dataset.add(new DataSample(sample.input, labelOneHot));
+        //pre-augmented epochs from AugmentCache, if there are any and they're wanted
+        AugmentCache cache = null;
+        if(new File(AugmentCache.DEFAULT_PATH).exists()){
+            System.out.print("Train from " + AugmentCache.DEFAULT_PATH + " instead of augmenting live? (y/n): ");
+            if(in.nextLine().trim().equalsIgnoreCase("y")){
+                cache = AugmentCache.open(AugmentCache.DEFAULT_PATH);
+            }
         }
 
+        //load data from dataset (not needed at all when training from the cache)
+        Dataset dataset = cache == null ? loadDataset() : null;
+        int samples = cache == null ? dataset.size() : cache.size();
+
         //testing value
         System.out.print("Testing? (y/n): ");
         String testComf = in.nextLine();
@@ -44,23 +48,41 @@ public class Trainer{
             System.out.print("Sample size (1-60000): ");
             int sampleSize = in.nextInt();
             in.nextLine();  //clear buffer because java is whiny like that
-            if (dataset.size() >= sampleSize && sampleSize > 0) {
-                dataset = dataset.subList(0, sampleSize);
+            if (samples >= sampleSize && sampleSize > 0) {
+                if(dataset != null) dataset = dataset.subset(sampleSize);
+                samples = sampleSize;
             }else{
                 System.out.println("You done messed up, boy.");
             }
-        }System.out.println("Loaded: " + dataset.size() + " samples.\n");
+        }System.out.println("Loaded: " + samples + " samples.\n");
         
         //network architechture                                                     ~ big part
         double[] dropoutRates = new double[]{0.1, 0.05, 0.0};    //rates of neuron dropout per layer
-        NeuralNetwork naminet = new NeuralNetwork(new int[]{784, 128, 64, 10}, dropoutRates);
+        long seed = System.nanoTime();  //set it to a logged seed to replay a run
+        System.out.println("Seed: " + seed + "\n");
+        boolean singlePrecision = false;    //float32 weights and activations (see PrecisionCheck)
+        NeuralNetwork naminet = new NeuralNetwork(new int[]{784, 128, 64, 10}, dropoutRates, Optimizer.Adam::new, seed, singlePrecision);
+        naminet.setWorkspaceMode(true);     //reuse layer buffers instead of allocating per batch
 
         //training parameters
         int epochs = 100;
         double initialLearningRate = 0.002;
         double decayRate = 0.998;
-
-        Random rand = new Random();
+        int batchSize = 32;     //samples per optimizer step (1 = plain per-sample training)
+        int threads = Runtime.getRuntime().availableProcessors();  //workers sharing each batch (1 = single-threaded)
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int augmentWorkers = 2;     //threads augmenting batches in the background
+        int prefetchDepth = 16;     //batches they may get ahead of training
+
+        BatchSource pipeline;
+        if(cache != null){
+            pipeline = cache.batches(samples, batchSize, epochs);
+            if(cache.epochs() < epochs){
+                System.out.println("(" + AugmentCache.DEFAULT_PATH + " holds " + cache.epochs() + " epochs, reusing them in a loop)\n");
+            }
+        }else{
+            pipeline = new AugmentPipeline(dataset, batchSize, epochs, augmentWorkers, prefetchDepth, seed);
+        }
         long startTime = System.currentTimeMillis();
         double[] avgLossAll = new double[epochs];
         double[] accuracyAll = new double[epochs];
@@ -68,39 +90,39 @@ public class Trainer{
         //training loop
         System.out.println("~ Training Session ~");
         for(int epoch=1; epoch<=epochs; epoch++){
-            Collections.shuffle(dataset, rand); //shuffle for randomness
             double totalLoss = 0.0;
             int correct = 0;
             double learningRate = initialLearningRate * Math.pow(decayRate, epoch);
             learningRate = Math.max(0.0005, learningRate);
 
-            for(DataSample sample : dataset){
-                //augment the images first
-                double[] augmentedInput = Augment.applyRandom(sample.inputs);
-                double[] smoothedInput = Augment.smooth(augmentedInput);
-
-                //forward pass
-                double[] prediction = naminet.forward(smoothedInput);
-
-                //compute loss
-                double loss = Functions.crossEntropyLoss(prediction, sample.labels);
-                totalLoss += loss;
-
-                //compute accuracy
-                int predictedClass = argMax(prediction);
-                int trueClass = argMax(sample.labels);
-                if(predictedClass == trueClass){
-                    correct++;
+            for(int b=0; b<pipeline.batchesPerEpoch(); b++){
+                //already shuffled and augmented (in the background or ahead of time)
+                BatchSource.Batch batch = nextBatch(pipeline);
+                double[][] batchInputs = batch.inputs;
+                double[][] batchLabels = batch.labels;
+                int size = batchInputs.length;
+
+                //forward pass + backpropagation (one optimizer step per mini-batch)
+                double[][] predictions = naminet.trainBatch(batchInputs, batchLabels, learningRate, pool);
+
+                for(int n=0; n<size; n++){
+                    //compute loss (from the same forward pass used for backprop)
+                    double loss = Functions.crossEntropyLoss(predictions[n], batchLabels[n]);
+                    totalLoss += loss;
+
+                    //compute accuracy
+                    int predictedClass = argMax(predictions[n]);
+                    int trueClass = argMax(batchLabels[n]);
+                    if(predictedClass == trueClass){
+                        correct++;
+                    }
                 }
-
-                //backpropagation
-                naminet.train(smoothedInput, sample.labels, learningRate);
             }
 
             //report average loss and accuracy
-            double avgLoss = totalLoss / dataset.size();
+            double avgLoss = totalLoss / samples;
             avgLossAll[epoch-1] = avgLoss;
-            double accuracy = 100.0 * correct / dataset.size();
+            double accuracy = 100.0 * correct / samples;
             accuracyAll[epoch-1] = accuracy;
             double diff = (epoch != 1) ? avgLossAll[epoch-2] - avgLossAll[epoch-1] : 0;   //difference in loss
             String sign = (diff >= 0) ? "+" : "-";
@@ -121,12 +143,16 @@ public class Trainer{
             }
         }
 
+        pool.shutdown();
+        pipeline.close();
+
         long endTime = System.currentTimeMillis();
         double seconds = (endTime - startTime) / 1000.0;
-        System.out.printf("\nTraining complete in %.2f seconds. (%d samples)\n", seconds, dataset.size());
+        System.out.printf("\nTraining complete in %.2f seconds. (%d samples)\n", seconds, samples);
         
-        //saving the model
-        ModelSaver.saveModel(naminet, "naminet_model.bin");
+        //saving the model, weights only for NamiNet and a checkpoint with the optimizer state to train on from
+        ModelSaver.saveInference(naminet, "naminet_model.bin");
+        ModelSaver.saveModel(naminet, "naminet_checkpoint.bin");
 
         //clear the logging file
         try (PrintWriter pw = new PrintWriter("naminet_training_log.txt")){
@@ -166,13 +192,29 @@ public class Trainer{
         try(FileWriter fw = new FileWriter("naminet_training_log.txt", true);
                 BufferedWriter bw = new BufferedWriter(fw);
                 PrintWriter out = new PrintWriter(bw)){
-                    out.printf("%n%n- Finished in %.02f seconds. (%d samples)", seconds, dataset.size());
+                    out.printf("%n%n- Finished in %.02f seconds. (%d samples, seed %d)", seconds, samples, seed);
                     System.out.println("\n(Training session logged into naminet_training_log.txt)");
         }catch(IOException e){
             e.printStackTrace();
         }
     }
 
+    //the binary IDX files if they're around (they load way faster than the csv), the csv otherwise
+    static Dataset loadDataset() throws IOException{
+        if(new File("train-images-idx3-ubyte").exists() && new File("train-labels-idx1-ubyte").exists()){
+            return Dataset.fromIdx(MNISTLoader.loadMNISTIDX("train-images-idx3-ubyte", "train-labels-idx1-ubyte"));
+        }
+        return MNISTLoader.loadMNISTCSVDataset("mnist_train.csv", Runtime.getRuntime().availableProcessors());
+    }
+
+    private static BatchSource.Batch nextBatch(BatchSource pipeline){
+        try{
+            return pipeline.next();
+        }catch(InterruptedException e){
+            throw new IllegalStateException("interrupted while waiting for a batch", e);
+        }
+    }
+
     public static int argMax(double[] array){   //finding biggest value in an array (argument)
         int index = 0;
         for(int i=1; i<array.length; i++){
@@ -0,0 +1,53 @@
+//the hidden activations over one InferenceModel-sized tile: 32 rows of 128 values, applied in place of a copy
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivationBenchmark{
+    private static final int ROWS = 32;
+    private static final int WIDTH = 128;
+
+    @Param({"0", "2", "3", "4"})     //Activation ids: leaky ReLU, ReLU, sigmoid, tanh
+    public int id;
+
+    private Activation activation;
+    private double[] z;
+    private double[] a;
+    private float[] zF;
+    private float[] aF;
+
+    @Setup
+    public void setup(){
+        SplittableRandom rand = new SplittableRandom(42);
+        activation = Activation.of(id);
+        z = new double[ROWS * WIDTH];
+        a = new double[ROWS * WIDTH];
+        zF = new float[ROWS * WIDTH];
+        aF = new float[ROWS * WIDTH];
+        for(int k=0; k<z.length; k++){
+            z[k] = rand.nextGaussian();
+            zF[k] = (float) z[k];
+        }
+    }
+
+    @Benchmark
+    public double[] apply(){
+        activation.apply(z, a, 0, ROWS, WIDTH);
+        return a;
+    }
+
+    @Benchmark
+    public float[] applyFloat(){
+        activation.apply(zF, aF, 0, ROWS, WIDTH);
+        return aF;
+    }
+}
@@ -0,0 +1,81 @@
+//every Augment transform on a single 28x28 image, plus the random mix the trainer applies
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AugmentBenchmark{
+    private double[] image;
+    private double[] out;
+    private SplittableRandom rand;
+
+    @Setup
+    public void setup(){
+        rand = new SplittableRandom(42);
+        image = Synthetic.image(rand);
+        out = new double[image.length];
+    }
+
+    @Benchmark
+    public double[] shift(){
+        return Augment.shift(image, 1, -1);
+    }
+
+    @Benchmark
+    public double[] rotate(){
+        return Augment.rotate(image, 7.5);
+    }
+
+    @Benchmark
+    public double[] scale(){
+        return Augment.scale(image, 1.06);
+    }
+
+    @Benchmark
+    public double[] transform(){     //shift + rotate + scale as one cached remap
+        return Augment.transform(image, 1, -1, 7.0, 1.06, out);
+    }
+
+    @Benchmark
+    public double[] addNoise(){
+        return Augment.addNoise(image, 0.01, rand);
+    }
+
+    @Benchmark
+    public double[] jitter(){
+        return Augment.jitter(image, 0.02, rand);
+    }
+
+    @Benchmark
+    public double[] occlude(){
+        return Augment.occlude(image, 3, rand);
+    }
+
+    @Benchmark
+    public double[] invert(){
+        return Augment.invert(image);
+    }
+
+    @Benchmark
+    public double[] elasticDistort(){
+        return Augment.elasticDistort(image, 1.5, 1.0, rand);
+    }
+
+    @Benchmark
+    public double[] smooth(){
+        return Augment.smooth(image, out);
+    }
+
+    @Benchmark
+    public double[] applyRandom(){
+        return Augment.applyRandom(image, rand);
+    }
+}
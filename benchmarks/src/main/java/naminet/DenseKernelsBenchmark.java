@@ -0,0 +1,99 @@
+//scalar vs Vector API DenseKernels on the trainer's layer shapes (784-128, 128-64, 64-10, batch of 32):
+//the forward dots, the dAprev axpys and the dW axpys of one batch
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class DenseKernelsBenchmark{
+    private static final int BATCH = 32;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    private DenseKernels k;
+    private double[][] w, dW;
+    private double[][][] x;
+    private float[][] wF, dWF;
+    private float[][][] xF;
+
+    @Setup
+    public void setup(){
+        k = kernels.equals("vector") ? DenseKernels.vector() : new DenseKernels.Scalar();
+        if(k == null) throw new IllegalStateException("jdk.incubator.vector isn't available");
+        SplittableRandom rand = new SplittableRandom(42);
+        int[] sizes = Synthetic.TOPOLOGY;
+        int layers = sizes.length - 1;
+        w = new double[layers][];
+        dW = new double[layers][];
+        x = new double[layers][BATCH][];
+        wF = new float[layers][];
+        dWF = new float[layers][];
+        xF = new float[layers][BATCH][];
+        for(int l=0; l<layers; l++){
+            int count = sizes[l] * sizes[l+1];
+            w[l] = new double[count];
+            dW[l] = new double[count];
+            wF[l] = new float[count];
+            dWF[l] = new float[count];
+            for(int j=0; j<count; j++){
+                w[l][j] = rand.nextGaussian() * 0.05;
+                wF[l][j] = (float) w[l][j];
+            }
+            for(int n=0; n<BATCH; n++){
+                x[l][n] = new double[sizes[l]];
+                xF[l][n] = new float[sizes[l]];
+                for(int j=0; j<sizes[l]; j++){
+                    x[l][n][j] = rand.nextDouble();
+                    xF[l][n][j] = (float) x[l][n][j];
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public double layersDouble(){
+        int[] sizes = Synthetic.TOPOLOGY;
+        double sink = 0;
+        for(int l=0; l<sizes.length-1; l++){
+            int in = sizes[l];
+            double[] dAprev = new double[in];
+            for(int i=0; i<sizes[l+1]; i++){
+                for(int n=0; n<BATCH; n++){
+                    double dz = k.dot(w[l], i * in, x[l][n], 0, in) * 1e-6;
+                    sink += dz;
+                    k.axpy(dz, w[l], i * in, dAprev, 0, in);
+                    k.axpy(dz, x[l][n], 0, dW[l], i * in, in);
+                }
+            }
+        }
+        return sink;
+    }
+
+    @Benchmark
+    public float layersFloat(){
+        int[] sizes = Synthetic.TOPOLOGY;
+        float sink = 0;
+        for(int l=0; l<sizes.length-1; l++){
+            int in = sizes[l];
+            float[] dAprev = new float[in];
+            for(int i=0; i<sizes[l+1]; i++){
+                for(int n=0; n<BATCH; n++){
+                    float dz = k.dot(wF[l], i * in, xF[l][n], 0, in) * 1e-6f;
+                    sink += dz;
+                    k.axpy(dz, wF[l], i * in, dAprev, 0, in);
+                    k.axpy(dz, xF[l][n], 0, dWF[l], i * in, in);
+                }
+            }
+        }
+        return sink;
+    }
+}
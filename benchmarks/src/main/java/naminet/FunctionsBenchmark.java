@@ -0,0 +1,56 @@
+//softmax and the loss on a 10-class output
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionsBenchmark{
+    private double[] logits;
+    private double[] probs;
+    private double[] target;
+    private float[] logitsF;
+    private float[] probsF;
+
+    @Setup
+    public void setup(){
+        SplittableRandom rand = new SplittableRandom(42);
+        logits = new double[10];
+        logitsF = new float[10];
+        for(int i=0; i<10; i++){
+            logits[i] = rand.nextGaussian() * 3;
+            logitsF[i] = (float) logits[i];
+        }
+        probs = new double[10];
+        probsF = new float[10];
+        target = new double[10];
+        target[3] = 1.0;
+    }
+
+    @Benchmark
+    public double[] softmax(){
+        return Functions.softmax(logits);
+    }
+
+    @Benchmark
+    public double[] softmaxInto(){
+        return Functions.softmax(logits, probs);
+    }
+
+    @Benchmark
+    public float[] softmaxFloat(){
+        return Functions.softmax(logitsF, probsF);
+    }
+
+    @Benchmark
+    public double crossEntropyLoss(){
+        return Functions.crossEntropyLoss(Functions.softmax(logits, probs), target);
+    }
+}
@@ -0,0 +1,46 @@
+//one InferenceModel shared by several benchmark threads, each with its own Workspace
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Threads(4)
+public class InferenceBenchmark{
+
+    @State(Scope.Benchmark)
+    public static class Shared{
+        @Param({"false", "true"})
+        public boolean singlePrecision;
+
+        InferenceModel model;
+
+        @Setup
+        public void setup(){
+            model = new NeuralNetwork(Synthetic.TOPOLOGY, Synthetic.DROPOUT, Optimizer.Adam::new, 42, singlePrecision).toInferenceModel();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller{
+        InferenceModel.Workspace workspace;
+        double[] input;
+
+        @Setup
+        public void setup(Shared shared){
+            workspace = shared.model.newWorkspace();
+            input = Synthetic.image(new SplittableRandom(Thread.currentThread().getId()));
+        }
+    }
+
+    @Benchmark
+    public double[] predict(Shared shared, Caller caller){
+        return shared.model.predict(caller.input, caller.workspace);
+    }
+}
@@ -0,0 +1,62 @@
+//NeuronLayer on its own: the trainer's first hidden layer (784 -> 128), per sample and per batch of 32
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LayerBenchmark{
+    private static final int BATCH = 32;
+
+    private NeuronLayer layer;
+    private double[] input;
+    private double[] dA;
+    private double[][] inputs;
+    private double[][] dAs;
+
+    @Setup
+    public void setup(){
+        SplittableRandom rand = new SplittableRandom(42);
+        layer = new NeuronLayer(784, 128, false, new Optimizer.Adam(), rand.split());
+        layer.setWorkspaceMode(true);
+        input = Synthetic.image(rand);
+        inputs = Synthetic.images(BATCH, rand);
+        dA = new double[128];
+        dAs = new double[BATCH][128];
+        for(int i=0; i<128; i++){
+            dA[i] = rand.nextGaussian() * 1e-3;
+            for(int n=0; n<BATCH; n++) dAs[n][i] = rand.nextGaussian() * 1e-3;
+        }
+    }
+
+    @Benchmark
+    public double[] forward(){
+        return layer.forward(input, 0.0);
+    }
+
+    @Benchmark
+    public double[] forwardBackward(){
+        layer.forward(input, 0.1);
+        return layer.backward(dA, 1e-6);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[][] forwardBatch(){
+        return layer.forwardBatch(inputs, 0.0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[][] forwardBackwardBatch(){
+        layer.forwardBatch(inputs, 0.1);
+        return layer.backwardBatch(dAs, 1e-6);
+    }
+}
@@ -0,0 +1,46 @@
+//MNISTLoader throughput on a synthetic 10 000 row csv and the matching IDX pair (time per whole file)
+
+package naminet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark{
+    private static final int ROWS = 10_000;
+
+    //csv parser threads, only parseCsv takes them
+    @State(Scope.Benchmark)
+    public static class Threads{
+        @Param({"1", "4"})
+        public int threads;
+    }
+
+    private Path csv;
+    private Path[] idx;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException{
+        SplittableRandom rand = new SplittableRandom(42);
+        csv = Synthetic.csv(ROWS, rand);
+        idx = Synthetic.idx(ROWS, rand);
+    }
+
+    @Benchmark
+    public Dataset parseCsv(Threads threads) throws IOException{
+        return MNISTLoader.loadMNISTCSVDataset(csv.toString(), threads.threads);
+    }
+
+    @Benchmark
+    public Dataset loadIdx() throws IOException{
+        return Dataset.fromIdx(MNISTLoader.loadMNISTIDX(idx[0].toString(), idx[1].toString()));
+    }
+}
@@ -0,0 +1,71 @@
+//the whole 784-128-64-10 network: inference (one image and batched) and one training step, in double and in float
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NetworkBenchmark{
+    private static final int BATCH = 32;
+    private static final int SCORED = 1024;     //images per predictBatch call, per-image time comparable to predict
+
+    @Param({"false", "true"})
+    public boolean singlePrecision;
+
+    private NeuralNetwork naminet;
+    private double[] input;
+    private double[][] inputs;
+    private double[][] labels;
+    private double[][] scored;
+    private double[] scoredFlat;
+
+    @Setup
+    public void setup(){
+        SplittableRandom rand = new SplittableRandom(42);
+        naminet = new NeuralNetwork(Synthetic.TOPOLOGY, Synthetic.DROPOUT, Optimizer.Adam::new, 42, singlePrecision);
+        naminet.setWorkspaceMode(true);
+        input = Synthetic.image(rand);
+        inputs = Synthetic.images(BATCH, rand);
+        labels = Synthetic.oneHots(BATCH, rand);
+        scored = Synthetic.images(SCORED, rand);
+        scoredFlat = new double[SCORED * Synthetic.PIXELS];
+        for(int n=0; n<SCORED; n++){
+            System.arraycopy(scored[n], 0, scoredFlat, n * Synthetic.PIXELS, Synthetic.PIXELS);
+        }
+    }
+
+    @Benchmark
+    public double[] predict(){
+        return naminet.predict(input);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCORED)
+    public Predictions predictBatch(){
+        return naminet.predictBatch(scored);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCORED)
+    public Predictions predictBatchFlat(){
+        return naminet.predictBatch(scoredFlat, SCORED, null);
+    }
+
+    @Benchmark
+    public double[] train(){
+        return naminet.train(input, labels[0], 1e-6);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[][] trainBatch(){
+        return naminet.trainBatch(inputs, labels, 1e-6);
+    }
+}
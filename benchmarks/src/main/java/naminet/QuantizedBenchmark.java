@@ -0,0 +1,44 @@
+//batch scoring of the 784-128-64-10 network with its double weights and quantized to int8 (QuantizedLayer),
+//both through InferenceModel's flat predictBatch
+
+package naminet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class QuantizedBenchmark{
+    private static final int SCORED = 1024;
+    private static final int CALIBRATION = 256;
+
+    @Param({"double", "int8"})
+    public String weights;
+
+    private InferenceModel model;
+    private double[] scored;
+
+    @Setup
+    public void setup(){
+        SplittableRandom rand = new SplittableRandom(42);
+        NeuralNetwork naminet = new NeuralNetwork(Synthetic.TOPOLOGY, Synthetic.DROPOUT, Optimizer.Adam::new, 42, false);
+        model = weights.equals("int8")
+                ? new InferenceModel(QuantizedLayer.quantize(naminet.layers(), Synthetic.images(CALIBRATION, rand)))
+                : naminet.toInferenceModel();
+        scored = new double[SCORED * Synthetic.PIXELS];
+        for(int n=0; n<SCORED; n++){
+            System.arraycopy(Synthetic.image(rand), 0, scored, n * Synthetic.PIXELS, Synthetic.PIXELS);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCORED)
+    public Predictions predictBatch(){
+        return model.predictBatch(scored, SCORED);
+    }
+}
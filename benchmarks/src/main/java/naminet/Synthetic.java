@@ -0,0 +1,89 @@
+//MNIST-shaped random data for the benchmarks, so none of them need the real files
+
+package naminet;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+final class Synthetic{
+    static final int PIXELS = 784;
+    static final int[] TOPOLOGY = {784, 128, 64, 10};     //same as Trainer
+    static final double[] DROPOUT = {0.1, 0.05, 0.0};
+
+    private Synthetic(){}
+
+    //a blob of ink on a dark background, roughly how a digit's pixel values are spread
+    static double[] image(SplittableRandom rand){
+        double[] image = new double[PIXELS];
+        int cx = 8 + rand.nextInt(12), cy = 8 + rand.nextInt(12);
+        for(int y=0; y<28; y++){
+            for(int x=0; x<28; x++){
+                double d = Math.hypot(x - cx, y - cy);
+                image[y * 28 + x] = d < 6 ? Math.min(1.0, (6 - d) / 3 + rand.nextDouble() * 0.1) : 0.0;
+            }
+        }
+        return image;
+    }
+
+    static double[][] images(int count, SplittableRandom rand){
+        double[][] images = new double[count][];
+        for(int n=0; n<count; n++){
+            images[n] = image(rand);
+        }
+        return images;
+    }
+
+    static double[][] oneHots(int count, SplittableRandom rand){
+        double[][] labels = new double[count][10];
+        for(int n=0; n<count; n++){
+            labels[n][rand.nextInt(10)] = 1.0;
+        }
+        return labels;
+    }
+
+    //mnist_train.csv layout: header row, then label,p0..p783 with 0-255 values
+    static Path csv(int rows, SplittableRandom rand) throws IOException{
+        Path path = Files.createTempFile("naminet-bench", ".csv");
+        path.toFile().deleteOnExit();
+        try(Writer out = new BufferedWriter(new FileWriter(path.toFile()), 1 << 16)){
+            out.write("label");
+            for(int p=0; p<PIXELS; p++) out.write(",p" + p);
+            out.write('\n');
+            for(int r=0; r<rows; r++){
+                out.write(Integer.toString(rand.nextInt(10)));
+                for(double v : image(rand)){
+                    out.write(',');
+                    out.write(Integer.toString((int) Math.round(v * 255)));
+                }
+                out.write('\n');
+            }
+        }
+        return path;
+    }
+
+    //train-images-idx3-ubyte / train-labels-idx1-ubyte pair, returned as {images, labels}
+    static Path[] idx(int count, SplittableRandom rand) throws IOException{
+        Path images = Files.createTempFile("naminet-bench-images", ".idx3");
+        Path labels = Files.createTempFile("naminet-bench-labels", ".idx1");
+        images.toFile().deleteOnExit();
+        labels.toFile().deleteOnExit();
+        try(DataOutputStream img = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(images.toFile()), 1 << 16));
+            DataOutputStream lbl = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(labels.toFile())))){
+            img.writeInt(0x00000803);
+            img.writeInt(count);
+            img.writeInt(28);
+            img.writeInt(28);
+            lbl.writeInt(0x00000801);
+            lbl.writeInt(count);
+            for(int n=0; n<count; n++){
+                for(double v : image(rand)){
+                    img.write((int) Math.round(v * 255));
+                }
+                lbl.write(rand.nextInt(10));
+            }
+        }
+        return new Path[]{images, labels};
+    }
+}
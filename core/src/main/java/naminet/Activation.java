@@ -0,0 +1,259 @@
+//activation functions for the layers
+//each layer gets one when it's built and runs it over whole buffers (a row, or a batch of rows back to back)
+//instead of calling a scalar function per value and picking softmax or leaky ReLU on every call
+//plain loops over arrays, which C2 can unroll and vectorize; the ids are what ModelFile stores per layer
+
+package naminet;
+
+import java.io.Serializable;
+
+interface Activation extends Serializable{
+    //a = f(z) for rows of width values from z[from..] into a[from..]; a may be z itself (in place)
+    void apply(double[] z, double[] a, int from, int rows, int width);
+    void apply(float[] z, float[] a, int from, int rows, int width);
+
+    //dZ = dA * f'(z) for the first count values; dZ may be dA itself
+    void backward(double[] z, double[] dA, double[] dZ, int count);
+    void backward(float[] z, float[] dA, float[] dZ, int count);
+
+    //standard deviation of the initial weights of a layer with inputSize inputs
+    double initScale(int inputSize);
+
+    int id();
+
+    Activation LEAKY_RELU = new LeakyReLU();
+    Activation SOFTMAX = new Softmax();
+    Activation RELU = new ReLU();
+    Activation SIGMOID = new Sigmoid();
+    Activation TANH = new Tanh();
+
+    //what every layer used before there was a choice: softmax on the output, leaky ReLU on the others
+    static Activation standard(boolean isOutputLayer){
+        return isOutputLayer ? SOFTMAX : LEAKY_RELU;
+    }
+
+    static Activation of(int id){
+        return switch(id){
+            case 0 -> LEAKY_RELU;
+            case 1 -> SOFTMAX;
+            case 2 -> RELU;
+            case 3 -> SIGMOID;
+            case 4 -> TANH;
+            default -> throw new IllegalArgumentException("unknown activation " + id);
+        };
+    }
+
+    //He initialization
+    private static double he(int inputSize){
+        return Math.sqrt(2.0 / inputSize);
+    }
+
+    //Xavier initialization
+    private static double xavier(int inputSize){
+        return Math.sqrt(1.0 / inputSize);
+    }
+
+    //z for z >= 0, 0.05 z below (max(z, 0.05 z) is the same thing without a branch)
+    class LeakyReLU implements Activation{
+        private static final long serialVersionUID = 1L;
+        private static final double SLOPE = 0.05;
+        private static final float SLOPE_F = 0.05f;
+
+        public void apply(double[] z, double[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = Math.max(z[k], SLOPE * z[k]);
+            }
+        }
+
+        public void apply(float[] z, float[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = Math.max(z[k], SLOPE_F * z[k]);
+            }
+        }
+
+        public void backward(double[] z, double[] dA, double[] dZ, int count){
+            for(int k=0; k<count; k++){
+                dZ[k] = z[k] >= 0 ? dA[k] : SLOPE * dA[k];
+            }
+        }
+
+        public void backward(float[] z, float[] dA, float[] dZ, int count){
+            for(int k=0; k<count; k++){
+                dZ[k] = z[k] >= 0 ? dA[k] : SLOPE_F * dA[k];
+            }
+        }
+
+        public double initScale(int inputSize){
+            return he(inputSize);
+        }
+
+        public int id(){
+            return 0;
+        }
+    }
+
+    //output layer only: each row normalized to probabilities (Functions.softmax)
+    //backward passes dA through, the network hands it (yp - yt), which already is the gradient of
+    //softmax + cross-entropy with respect to z
+    class Softmax implements Activation{
+        private static final long serialVersionUID = 1L;
+
+        public void apply(double[] z, double[] a, int from, int rows, int width){
+            if(a != z) System.arraycopy(z, from, a, from, rows * width);
+            for(int row=from; row<from+rows*width; row+=width){
+                Functions.softmax(a, row, width);
+            }
+        }
+
+        public void apply(float[] z, float[] a, int from, int rows, int width){
+            if(a != z) System.arraycopy(z, from, a, from, rows * width);
+            for(int row=from; row<from+rows*width; row+=width){
+                Functions.softmax(a, row, width);
+            }
+        }
+
+        public void backward(double[] z, double[] dA, double[] dZ, int count){
+            if(dZ != dA) System.arraycopy(dA, 0, dZ, 0, count);
+        }
+
+        public void backward(float[] z, float[] dA, float[] dZ, int count){
+            if(dZ != dA) System.arraycopy(dA, 0, dZ, 0, count);
+        }
+
+        public double initScale(int inputSize){
+            return xavier(inputSize);
+        }
+
+        public int id(){
+            return 1;
+        }
+    }
+
+    class ReLU implements Activation{
+        private static final long serialVersionUID = 1L;
+
+        public void apply(double[] z, double[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = Math.max(z[k], 0.0);
+            }
+        }
+
+        public void apply(float[] z, float[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = Math.max(z[k], 0f);
+            }
+        }
+
+        public void backward(double[] z, double[] dA, double[] dZ, int count){
+            for(int k=0; k<count; k++){
+                dZ[k] = z[k] >= 0 ? dA[k] : 0.0;
+            }
+        }
+
+        public void backward(float[] z, float[] dA, float[] dZ, int count){
+            for(int k=0; k<count; k++){
+                dZ[k] = z[k] >= 0 ? dA[k] : 0f;
+            }
+        }
+
+        public double initScale(int inputSize){
+            return he(inputSize);
+        }
+
+        public int id(){
+            return 2;
+        }
+    }
+
+    //backward recomputes the sigmoid from z, layers keep z rather than a for the gradients
+    class Sigmoid implements Activation{
+        private static final long serialVersionUID = 1L;
+
+        public void apply(double[] z, double[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = 1 / (1 + Math.exp(-z[k]));
+            }
+        }
+
+        public void apply(float[] z, float[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = (float) (1 / (1 + Math.exp(-z[k])));
+            }
+        }
+
+        public void backward(double[] z, double[] dA, double[] dZ, int count){
+            for(int k=0; k<count; k++){
+                double s = 1 / (1 + Math.exp(-z[k]));
+                dZ[k] = dA[k] * s * (1 - s);
+            }
+        }
+
+        public void backward(float[] z, float[] dA, float[] dZ, int count){
+            for(int k=0; k<count; k++){
+                float s = (float) (1 / (1 + Math.exp(-z[k])));
+                dZ[k] = dA[k] * s * (1 - s);
+            }
+        }
+
+        public double initScale(int inputSize){
+            return xavier(inputSize);
+        }
+
+        public int id(){
+            return 3;
+        }
+    }
+
+    //tanh(|z|) = -m / (2 + m) with m = e^-2|z| - 1, sign put back after; Math.tanh isn't a JIT intrinsic on JDK 17
+    //and costs close to 100 ns a value, this is within 2 ulps of it; backward recomputes it from z
+    class Tanh implements Activation{
+        private static final long serialVersionUID = 1L;
+
+        public void apply(double[] z, double[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = tanh(z[k]);
+            }
+        }
+
+        public void apply(float[] z, float[] a, int from, int rows, int width){
+            for(int k=from; k<from+rows*width; k++){
+                a[k] = (float) tanh(z[k]);
+            }
+        }
+
+        public void backward(double[] z, double[] dA, double[] dZ, int count){
+            for(int k=0; k<count; k++){
+                double t = tanh(z[k]);
+                dZ[k] = dA[k] * (1 - t * t);
+            }
+        }
+
+        public void backward(float[] z, float[] dA, float[] dZ, int count){
+            for(int k=0; k<count; k++){
+                float t = (float) tanh(z[k]);
+                dZ[k] = dA[k] * (1 - t * t);
+            }
+        }
+
+        private static double tanh(double z){
+            double x = Math.abs(z);
+            double t;
+            if(x < 0.55){
+                double m = Math.expm1(-2 * x);     //1 - e^-2x cancels to nothing near 0, expm1 keeps the digits
+                t = -m / (2 + m);
+            }else{
+                double e = Math.exp(-2 * x);        //no cancellation left here, and Math.exp is an intrinsic (expm1 isn't)
+                t = (1 - e) / (1 + e);
+            }
+            return z < 0 ? -t : t;      //Math.copySign made the float loop over twice as slow
+        }
+
+        public double initScale(int inputSize){
+            return xavier(inputSize);
+        }
+
+        public int id(){
+            return 4;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+// Augment.java ~ handles image tweaks for MNIST (by lumi <3)
+
+package naminet;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.random.RandomGenerator;
+
+public class Augment {
+    private static final int WIDTH = 28;
+    private static final int HEIGHT = 28;
+    // every random tweak takes the generator to draw from (e.g. a seeded SplittableRandom for
+    // reproducible runs), the overloads without one use the calling thread's ThreadLocalRandom
+
+    // Shift the image by dx (horizontal) and dy (vertical)
+    public static double[] shift(double[] original, int dx, int dy) {
+        return gather(original, shiftSource(dx, dy), new double[WIDTH * HEIGHT]);
+    }
+
+    // Scale the image by a factor (e.g., 0.9 for zoom out, 1.1 for zoom in)
+    public static double[] scale(double[] original, double scaleFactor) {
+        return gather(original, scaleSource(scaleFactor), new double[WIDTH * HEIGHT]);
+    }
+
+    // Rotate the image by a small angle in degrees (-15 to +15 typical)
+    public static double[] rotate(double[] original, double angleDegrees) {
+        return gather(original, rotateSource(angleDegrees), new double[WIDTH * HEIGHT]);
+    }
+
+    // Shift, then rotate, then scale in one pass (same result as the three calls in a row)
+    // angle is rounded to ANGLE_STEP and scale to SCALE_STEP so the remap table can be cached
+    public static double[] transform(double[] original, int dx, int dy, double angleDegrees, double scaleFactor) {
+        return transform(original, dx, dy, angleDegrees, scaleFactor, new double[WIDTH * HEIGHT]);
+    }
+
+    public static double[] transform(double[] original, int dx, int dy, double angleDegrees, double scaleFactor, double[] out) {
+        int angleSteps = (int)Math.round(angleDegrees / ANGLE_STEP);
+        int scaleSteps = (int)Math.round((scaleFactor - 1.0) / SCALE_STEP);
+        return gather(original, transformSource(dx, dy, angleSteps, scaleSteps), out);
+    }
+
+    // Cached remap tables: for every output pixel the input pixel it copies, or -1 for background.
+    // The grid covers what applyRandom draws (shift +-1, rotate +-15 deg, scale 0.9-1.1),
+    // anything outside it gets a table built on the spot
+    private static final double ANGLE_STEP = 1.0;   // degrees
+    private static final double SCALE_STEP = 0.02;
+    private static final int MAX_SHIFT = 1;
+    private static final int MAX_ANGLE_STEPS = 15;
+    private static final int MAX_SCALE_STEPS = 5;
+    private static final int SHIFTS = 2 * MAX_SHIFT + 1;
+    private static final int ANGLES = 2 * MAX_ANGLE_STEPS + 1;
+    private static final int SCALES = 2 * MAX_SCALE_STEPS + 1;
+    private static final AtomicReferenceArray<int[]> transformCache =
+        new AtomicReferenceArray<>(SHIFTS * SHIFTS * ANGLES * SCALES);   // filled lazily, ~3 KB per table
+    private static final AtomicReferenceArray<int[]> rotateCache = new AtomicReferenceArray<>(ANGLES);
+    private static final AtomicReferenceArray<int[]> scaleCache = new AtomicReferenceArray<>(SCALES);
+
+    private static int[] transformSource(int dx, int dy, int angleSteps, int scaleSteps) {
+        if (Math.abs(dx) > MAX_SHIFT || Math.abs(dy) > MAX_SHIFT
+            || Math.abs(angleSteps) > MAX_ANGLE_STEPS || Math.abs(scaleSteps) > MAX_SCALE_STEPS) {
+            return compose(shiftSource(dx, dy), rotateSource(angleSteps * ANGLE_STEP), scaleSource(1.0 + scaleSteps * SCALE_STEP));
+        }
+        int key = (((dy + MAX_SHIFT) * SHIFTS + (dx + MAX_SHIFT)) * ANGLES + (angleSteps + MAX_ANGLE_STEPS)) * SCALES
+            + (scaleSteps + MAX_SCALE_STEPS);
+        int[] table = transformCache.get(key);
+        if (table == null) {
+            table = compose(shiftSource(dx, dy), cachedRotate(angleSteps), cachedScale(scaleSteps));
+            transformCache.compareAndSet(key, null, table);     // another thread may have won, both tables are equal
+        }
+        return table;
+    }
+
+    private static int[] cachedRotate(int angleSteps) {
+        int[] table = rotateCache.get(angleSteps + MAX_ANGLE_STEPS);
+        if (table == null) {
+            table = rotateSource(angleSteps * ANGLE_STEP);
+            rotateCache.compareAndSet(angleSteps + MAX_ANGLE_STEPS, null, table);
+        }
+        return table;
+    }
+
+    private static int[] cachedScale(int scaleSteps) {
+        int[] table = scaleCache.get(scaleSteps + MAX_SCALE_STEPS);
+        if (table == null) {
+            table = scaleSource(1.0 + scaleSteps * SCALE_STEP);
+            scaleCache.compareAndSet(scaleSteps + MAX_SCALE_STEPS, null, table);
+        }
+        return table;
+    }
+
+    // Follow each output pixel back through scale, rotate and shift to the original pixel
+    private static int[] compose(int[] shift, int[] rotate, int[] scale) {
+        int[] table = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < table.length; i++) {
+            int src = scale[i];
+            if (src >= 0) src = rotate[src];
+            if (src >= 0) src = shift[src];
+            table[i] = src;
+        }
+        return table;
+    }
+
+    // The single pass every geometric tweak ends up as
+    private static double[] gather(double[] original, int[] source, double[] out) {
+        for (int i = 0; i < source.length; i++) {
+            int src = source[i];
+            out[i] = src < 0 ? 0.0 : original[src];
+        }
+        return out;
+    }
+
+    private static int[] shiftSource(int dx, int dy) {
+        int[] source = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int oldX = x - dx;
+                int oldY = y - dy;
+                if (oldX >= 0 && oldX < WIDTH && oldY >= 0 && oldY < HEIGHT) {
+                    source[y * WIDTH + x] = oldY * WIDTH + oldX;
+                } else {
+                    source[y * WIDTH + x] = -1;
+                }
+            }
+        }
+        return source;
+    }
+
+    private static int[] scaleSource(double scaleFactor) {
+        int[] source = new int[WIDTH * HEIGHT];
+        Arrays.fill(source, -1);
+
+        int newW = (int)(WIDTH * scaleFactor);
+        int newH = (int)(HEIGHT * scaleFactor);
+
+        int xOffset = (WIDTH - newW) / 2;
+        int yOffset = (HEIGHT - newH) / 2;
+
+        for (int y = 0; y < newH; y++) {
+            for (int x = 0; x < newW; x++) {
+                int srcX = (int)(x / scaleFactor);
+                int srcY = (int)(y / scaleFactor);
+                if (srcX >= 0 && srcX < WIDTH && srcY >= 0 && srcY < HEIGHT) {
+                    int destX = x + xOffset;
+                    int destY = y + yOffset;
+                    if (destX >= 0 && destX < WIDTH && destY >= 0 && destY < HEIGHT) {
+                        source[destY * WIDTH + destX] = srcY * WIDTH + srcX;
+                    }
+                }
+            }
+        }
+
+        return source;
+    }
+
+    private static int[] rotateSource(double angleDegrees) {
+        double radians = Math.toRadians(angleDegrees);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        int[] source = new int[WIDTH * HEIGHT];
+
+        int cx = WIDTH / 2;
+        int cy = HEIGHT / 2;
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Translate point back to origin:
+                int tx = x - cx;
+                int ty = y - cy;
+
+                // Rotate point
+                int rx = (int)Math.round(cos * tx - sin * ty);
+                int ry = (int)Math.round(sin * tx + cos * ty);
+
+                // Translate point back
+                int newX = rx + cx;
+                int newY = ry + cy;
+
+                if (newX >= 0 && newX < WIDTH && newY >= 0 && newY < HEIGHT) {
+                    source[y * WIDTH + x] = newY * WIDTH + newX;
+                } else {
+                    source[y * WIDTH + x] = -1; // background
+                }
+            }
+        }
+
+        return source;
+    }
+
+    // Add Gaussian noise to image
+    public static double[] addNoise(double[] original, double stdDev) {
+        return addNoise(original, stdDev, ThreadLocalRandom.current());
+    }
+
+    public static double[] addNoise(double[] original, double stdDev, RandomGenerator rand) {
+        double[] noisy = new double[original.length];
+        for (int i = 0; i < original.length; i++) {
+            noisy[i] = original[i] + rand.nextGaussian() * stdDev;
+            noisy[i] = Math.max(0.0, Math.min(1.0, noisy[i])); // clamp to [0,1]
+        }
+        return noisy;
+    }
+
+    // Invert image (optional challenge mode)
+    public static double[] invert(double[] original) {
+        double[] inverted = new double[original.length];
+        for (int i = 0; i < original.length; i++) {
+            inverted[i] = 1.0 - original[i];
+        }
+        return inverted;
+    }
+
+    // Tiny uniform noise per pixel (e.g., [-scale, +scale])
+    public static double[] jitter(double[] original, double scale) {
+        return jitter(original, scale, ThreadLocalRandom.current());
+    }
+
+    public static double[] jitter(double[] original, double scale, RandomGenerator rand) {
+        double[] jittered = new double[original.length];
+        for (int i = 0; i < original.length; i++) {
+            jittered[i] = original[i] + (rand.nextDouble() * 2 - 1) * scale;
+            jittered[i] = Math.max(0.0, Math.min(1.0, jittered[i])); // clamp
+        }
+        return jittered;
+    }
+
+    //randomly erase a square portion, makes the model less reliant on any one part of the digit
+    public static double[] occlude(double[] original, int boxSize) {
+        return occlude(original, boxSize, ThreadLocalRandom.current());
+    }
+
+    public static double[] occlude(double[] original, int boxSize, RandomGenerator rand) {
+        double[] occluded = original.clone();
+        int x = rand.nextInt(WIDTH - boxSize);
+        int y = rand.nextInt(HEIGHT - boxSize);
+
+        for (int dy = 0; dy < boxSize; dy++) {
+            for (int dx = 0; dx < boxSize; dx++) {
+                occluded[(y + dy) * WIDTH + (x + dx)] = 0.0;
+            }
+        }
+        return occluded;
+    }
+
+    // Elastic distortion for MNIST images
+    public static double[] elasticDistort(double[] original, double alpha, double sigma) {
+        return elasticDistort(original, alpha, sigma, ThreadLocalRandom.current());
+    }
+
+    public static double[] elasticDistort(double[] original, double alpha, double sigma, RandomGenerator rand) {
+        int width = 28;
+        int height = 28;
+
+        // Generate random displacement fields
+        double[] dx = new double[width * height];
+        double[] dy = new double[width * height];
+        for (int i = 0; i < dx.length; i++) {
+            dx[i] = (rand.nextDouble() * 2 - 1);
+            dy[i] = (rand.nextDouble() * 2 - 1);
+        }
+
+        // Smooth the displacement fields using a simple 3x3 Gaussian filter (in place)
+        gaussianSmooth(dx, sigma);
+        gaussianSmooth(dy, sigma);
+
+        // Apply displacement, scaled by alpha
+        double[] distorted = new double[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                double newX = x + dx[i] * alpha;
+                double newY = y + dy[i] * alpha;
+                distorted[i] = bilinearInterpolate(original, newX, newY);
+            }
+        }
+        return distorted;
+    }
+
+    // Bilinear interpolation for subpixel sampling
+    private static double bilinearInterpolate(double[] image, double x, double y) {
+        int width = 28;
+        int height = 28;
+
+        int x0 = (int)Math.floor(x);
+        int y0 = (int)Math.floor(y);
+        int x1 = x0 + 1;
+        int y1 = y0 + 1;
+
+        double wx = x - x0;
+        double wy = y - y0;
+
+        double v00 = getPixel(image, x0, y0);
+        double v10 = getPixel(image, x1, y0);
+        double v01 = getPixel(image, x0, y1);
+        double v11 = getPixel(image, x1, y1);
+
+        return (1 - wx)*(1 - wy)*v00 +
+            wx*(1 - wy)*v10 +
+            (1 - wx)*wy*v01 +
+            wx*wy*v11;
+    }
+
+    // Get pixel safely (returns 0 if out of bounds)
+    private static double getPixel(double[] image, int x, int y) {
+        int width = 28;
+        int height = 28;
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return 0.0;
+        }
+        return image[y * width + x];
+    }
+
+    // Simple 3x3 Gaussian smoothing (sigma is not used, the kernel is the fixed 1-2-1 one)
+    private static double[] gaussianSmooth(double[] field, double sigma) {
+        return Kernels.binomial3(field, field, WIDTH, HEIGHT);
+    }
+
+    // Apply random augmentation (can be toggled during training)
+    public static double[] applyRandom(double[] image) {
+        return applyRandom(image, ThreadLocalRandom.current());
+    }
+
+    public static double[] applyRandom(double[] image, RandomGenerator rand) {
+
+        // Randomly shift the image horizontally and vertically by -1, 0, or +1 pixels
+        int dx = 0, dy = 0;
+        if (rand.nextDouble() < 0.7) {
+            dx = rand.nextInt(3) - 1; // -1,0,1
+            dy = rand.nextInt(3) - 1;
+        }
+
+        // Randomly rotate the image by -15 to +15 degrees
+        double angle = 0.0;
+        if (rand.nextDouble() < 0.4) {
+            angle = (rand.nextDouble() * 30.0) - 15.0; // -15 to +15 degrees
+        }
+
+        // Random scaling (zoom in or out by ~10%)
+        double scaleFactor = 1.0;
+        if (rand.nextDouble() < 0.3) {
+            scaleFactor = 0.9 + rand.nextDouble() * 0.2;  // range: [0.9, 1.1]
+        }
+
+        // All three geometric tweaks as one cached remap
+        if (dx != 0 || dy != 0 || angle != 0.0 || scaleFactor != 1.0) {
+            image = transform(image, dx, dy, angle, scaleFactor);
+        }
+
+        // Randomly add tiny uniform noise to each pixel (jitter)
+        if (rand.nextDouble() < 0.2) {  
+            image = jitter(image, 0.02, rand);
+        }
+
+        // Optionally add Gaussian noise (random small variations) to each pixel
+        if (rand.nextDouble() < 0.05) {
+            image = addNoise(image, 0.01, rand);
+        }
+
+        // With 10% probability, erase a random 3x3 patch (occlusion augmentation)
+        if (rand.nextDouble() < 0.10) {
+            image = occlude(image, 3, rand);
+        }
+
+        // Elastic distortion with 10% chance (MNIST classic)
+        if (rand.nextDouble() < 0.2) {
+            image = elasticDistort(image, 1.5, 1.0, rand);
+        }
+
+        return image;
+    }
+
+    // Simple 3x3 smoothing filter for 28x28 image
+    public static double[] smooth(double[] original) {
+        return smooth(original, new double[original.length]);
+    }
+
+    // Same, into out (may be original itself)
+    public static double[] smooth(double[] original, double[] out) {
+        return Kernels.box3(original, out, WIDTH, HEIGHT);
+    }
+}
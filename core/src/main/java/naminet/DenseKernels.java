@@ -0,0 +1,194 @@
+//the inner loops of the dense layers: dot products for z = W x + b and axpy (y += alpha * x) for dW and dA
+//picks VectorKernels (SIMD, jdk.incubator.vector) when that module was added to the JVM, plain loops otherwise
+//  java --add-modules jdk.incubator.vector ...       (-Dnaminet.scalar=true forces the plain loops)
+
+package naminet;
+
+interface DenseKernels{
+    DenseKernels INSTANCE = select();
+
+    double dot(double[] a, int aFrom, double[] b, int bFrom, int count);
+    void axpy(double alpha, double[] x, int xFrom, double[] y, int yFrom, int count);     //y[yFrom..] += alpha * x[xFrom..]
+    float dot(float[] a, int aFrom, float[] b, int bFrom, int count);
+    void axpy(float alpha, float[] x, int xFrom, float[] y, int yFrom, int count);
+
+    //C = A * B^T for rows of len values stored back to back: c[cFrom + r*bRows + j] = dot(row r of a, row j of b)
+    //(a batch of inputs times the weight matrix, every output row holding one sample's z)
+    void matmulT(double[] a, int aFrom, int aRows, double[] b, int bFrom, int bRows, int len, double[] c, int cFrom);
+    void matmulT(float[] a, int aFrom, int aRows, float[] b, int bFrom, int bRows, int len, float[] c, int cFrom);
+
+    //int8 versions for QuantizedLayer, summed in int32: a product is at most 127*127, so rows of up to
+    //133 000 values can't overflow
+    int dot(byte[] a, int aFrom, byte[] b, int bFrom, int count);
+    void matmulT(byte[] a, int aFrom, int aRows, byte[] b, int bFrom, int bRows, int len, int[] c, int cFrom);
+
+    String name();
+
+    static DenseKernels select(){
+        if(!Boolean.getBoolean("naminet.scalar") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+            DenseKernels vector = vector();
+            if(vector != null) return vector;
+        }
+        return new Scalar();
+    }
+
+    //the SIMD kernels, or null when the module or the class isn't there
+    static DenseKernels vector(){
+        try{
+            return (DenseKernels) Class.forName("naminet.VectorKernels").getDeclaredConstructor().newInstance();
+        }catch(ReflectiveOperationException | LinkageError e){
+            return null;
+        }
+    }
+
+    class Scalar implements DenseKernels{
+        public double dot(double[] a, int aFrom, double[] b, int bFrom, int count){
+            double sum = 0.0;
+            for(int k=0; k<count; k++){
+                sum += a[aFrom + k] * b[bFrom + k];
+            }
+            return sum;
+        }
+
+        public void axpy(double alpha, double[] x, int xFrom, double[] y, int yFrom, int count){
+            for(int k=0; k<count; k++){
+                y[yFrom + k] += alpha * x[xFrom + k];
+            }
+        }
+
+        public float dot(float[] a, int aFrom, float[] b, int bFrom, int count){
+            float sum = 0f;
+            for(int k=0; k<count; k++){
+                sum += a[aFrom + k] * b[bFrom + k];
+            }
+            return sum;
+        }
+
+        public void axpy(float alpha, float[] x, int xFrom, float[] y, int yFrom, int count){
+            for(int k=0; k<count; k++){
+                y[yFrom + k] += alpha * x[xFrom + k];
+            }
+        }
+
+        //2 a rows x 2 b rows at a time: four independent sums, and every value loaded is used twice
+        public void matmulT(double[] a, int aFrom, int aRows, double[] b, int bFrom, int bRows, int len, double[] c, int cFrom){
+            int j = 0;
+            for(; j <= bRows - 2; j += 2){
+                int b0 = bFrom + j * len;
+                int b1 = b0 + len;
+                int r = 0;
+                for(; r <= aRows - 2; r += 2){
+                    int a0 = aFrom + r * len;
+                    int a1 = a0 + len;
+                    double s00 = 0.0, s01 = 0.0, s10 = 0.0, s11 = 0.0;
+                    for(int k=0; k<len; k++){
+                        double x0 = a[a0 + k], x1 = a[a1 + k];
+                        double w0 = b[b0 + k], w1 = b[b1 + k];
+                        s00 += x0 * w0;
+                        s01 += x0 * w1;
+                        s10 += x1 * w0;
+                        s11 += x1 * w1;
+                    }
+                    int out = cFrom + r * bRows + j;
+                    c[out] = s00;
+                    c[out + 1] = s01;
+                    c[out + bRows] = s10;
+                    c[out + bRows + 1] = s11;
+                }
+                for(; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, b0, len);
+                    c[cFrom + r * bRows + j + 1] = dot(a, aFrom + r * len, b, b1, len);
+                }
+            }
+            for(; j<bRows; j++){
+                for(int r=0; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+                }
+            }
+        }
+
+        public void matmulT(float[] a, int aFrom, int aRows, float[] b, int bFrom, int bRows, int len, float[] c, int cFrom){
+            int j = 0;
+            for(; j <= bRows - 2; j += 2){
+                int b0 = bFrom + j * len;
+                int b1 = b0 + len;
+                int r = 0;
+                for(; r <= aRows - 2; r += 2){
+                    int a0 = aFrom + r * len;
+                    int a1 = a0 + len;
+                    float s00 = 0f, s01 = 0f, s10 = 0f, s11 = 0f;
+                    for(int k=0; k<len; k++){
+                        float x0 = a[a0 + k], x1 = a[a1 + k];
+                        float w0 = b[b0 + k], w1 = b[b1 + k];
+                        s00 += x0 * w0;
+                        s01 += x0 * w1;
+                        s10 += x1 * w0;
+                        s11 += x1 * w1;
+                    }
+                    int out = cFrom + r * bRows + j;
+                    c[out] = s00;
+                    c[out + 1] = s01;
+                    c[out + bRows] = s10;
+                    c[out + bRows + 1] = s11;
+                }
+                for(; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, b0, len);
+                    c[cFrom + r * bRows + j + 1] = dot(a, aFrom + r * len, b, b1, len);
+                }
+            }
+            for(; j<bRows; j++){
+                for(int r=0; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+                }
+            }
+        }
+
+        public int dot(byte[] a, int aFrom, byte[] b, int bFrom, int count){
+            int sum = 0;
+            for(int k=0; k<count; k++){
+                sum += a[aFrom + k] * b[bFrom + k];
+            }
+            return sum;
+        }
+
+        public void matmulT(byte[] a, int aFrom, int aRows, byte[] b, int bFrom, int bRows, int len, int[] c, int cFrom){
+            int j = 0;
+            for(; j <= bRows - 2; j += 2){
+                int b0 = bFrom + j * len;
+                int b1 = b0 + len;
+                int r = 0;
+                for(; r <= aRows - 2; r += 2){
+                    int a0 = aFrom + r * len;
+                    int a1 = a0 + len;
+                    int s00 = 0, s01 = 0, s10 = 0, s11 = 0;
+                    for(int k=0; k<len; k++){
+                        int x0 = a[a0 + k], x1 = a[a1 + k];
+                        int w0 = b[b0 + k], w1 = b[b1 + k];
+                        s00 += x0 * w0;
+                        s01 += x0 * w1;
+                        s10 += x1 * w0;
+                        s11 += x1 * w1;
+                    }
+                    int out = cFrom + r * bRows + j;
+                    c[out] = s00;
+                    c[out + 1] = s01;
+                    c[out + bRows] = s10;
+                    c[out + bRows + 1] = s11;
+                }
+                for(; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, b0, len);
+                    c[cFrom + r * bRows + j + 1] = dot(a, aFrom + r * len, b, b1, len);
+                }
+            }
+            for(; j<bRows; j++){
+                for(int r=0; r<aRows; r++){
+                    c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+                }
+            }
+        }
+
+        public String name(){
+            return "scalar";
+        }
+    }
+}
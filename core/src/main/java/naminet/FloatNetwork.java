@@ -0,0 +1,224 @@
+//the layers of a single precision NeuralNetwork, trained batch-wise like NeuralNetwork.trainBatch       ~template~
+//inputs and predictions stay double[] at the edges, everything in between is float
+
+package naminet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+class FloatNetwork implements Serializable{
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_SHARD_SIZE = 4;
+
+    private final FloatNeuronLayer[] layers;
+    private final double[] dropoutRates;
+
+    private transient boolean workspace;
+    private transient Shard[] shards;      //one per worker of the last parallel trainBatch
+    private transient Shard local;         //the calling thread's: forward, and any trainBatch that isn't split
+    private transient double[][] predictions;
+    private transient SplittableRandom rand;
+
+    //one worker's share of a batch: its float copy of the inputs and a cache per layer
+    private static class Shard{
+        float[][] inputs;
+        FloatNeuronLayer.BatchCache[] caches;
+    }
+
+    //hidden on every layer but the output, which is softmax
+    FloatNetwork(int[] layerSizes, double[] dropoutRates, Activation hidden, Supplier<Optimizer> optimizers, SplittableRandom rand){
+        this.dropoutRates = dropoutRates;
+        this.rand = rand;
+        layers = new FloatNeuronLayer[layerSizes.length - 1];
+        for(int i=0; i<layers.length; i++){
+            Activation activation = (i == layers.length - 1) ? Activation.SOFTMAX : hidden;
+            layers[i] = new FloatNeuronLayer(layerSizes[i], layerSizes[i+1], activation, optimizers.get(), rand.split());
+        }
+    }
+
+    //layers read back from a model file (ModelFile)
+    FloatNetwork(FloatNeuronLayer[] layers, double[] dropoutRates){
+        this.layers = layers;
+        this.dropoutRates = dropoutRates;
+    }
+
+    FloatNeuronLayer[] layers(){
+        return layers;
+    }
+
+    void setSeed(SplittableRandom rand){
+        this.rand = rand;
+        for(FloatNeuronLayer layer : layers){
+            layer.setRandom(rand.split());
+        }
+        shards = null;
+        local = null;
+    }
+
+    void setOptimizer(Supplier<Optimizer> optimizers){
+        for(FloatNeuronLayer layer : layers){
+            layer.setOptimizer(optimizers == null ? null : optimizers.get());
+        }
+    }
+
+    void setWorkspaceMode(boolean workspace){
+        this.workspace = workspace;
+        for(FloatNeuronLayer layer : layers){
+            layer.setWorkspaceMode(workspace);
+        }
+    }
+
+    //forward pass with dropout, like NeuralNetwork.forward
+    double[] forward(double[] input){
+        Shard shard = local();
+        float[][] a = toFloat(new double[][]{input}, 0, 1, shard);
+        for(int i=0; i<layers.length; i++){
+            a = layers[i].forwardBatch(a, dropoutRates[i], shard.caches[i]);
+        }
+        double[] out = new double[a[0].length];
+        for(int i=0; i<out.length; i++){
+            out[i] = a[0][i];
+        }
+        return out;
+    }
+
+    //pool may be null, then the whole batch is one shard on the calling thread
+    double[][] trainBatch(double[][] inputs, double[][] targets, double lr, ForkJoinPool pool){
+        int batchSize = inputs.length;
+        int count = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), (batchSize + MIN_SHARD_SIZE - 1) / MIN_SHARD_SIZE));
+        Shard[] shards = count == 1 ? new Shard[]{local()} : shards(count);
+        if(!workspace || predictions == null || predictions.length != batchSize) predictions = new double[batchSize][];
+        double[][] predictions = this.predictions;
+        float scale = 1f / batchSize;   //each shard scales by the full batch, so the sum is the batch mean
+
+        if(count == 1){
+            gradients(inputs, targets, 0, batchSize, scale, shards[0], predictions);
+        }else{
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for(int s=0; s<count; s++){
+                int from = s * batchSize / count;
+                int to = (s + 1) * batchSize / count;
+                Shard shard = shards[s];
+                tasks.add(pool.submit(() -> gradients(inputs, targets, from, to, scale, shard, predictions)));
+            }
+            for(ForkJoinTask<?> task : tasks) task.join();
+
+            //reduce into shard 0, split by index range like NeuralNetwork
+            tasks.clear();
+            for(int l=0; l<layers.length; l++){
+                int layer = l;
+                float[] dW = shards[0].caches[l].dW;
+                for(int s=0; s<count; s++){
+                    int from = s * dW.length / count;
+                    int to = (s + 1) * dW.length / count;
+                    tasks.add(pool.submit(() -> {
+                        for(int k=1; k<shards.length; k++){
+                            float[] part = shards[k].caches[layer].dW;
+                            for(int j=from; j<to; j++){
+                                dW[j] += part[j];
+                            }
+                        }
+                    }));
+                }
+                float[] dB = shards[0].caches[l].dB;
+                for(int k=1; k<count; k++){
+                    float[] part = shards[k].caches[l].dB;
+                    for(int j=0; j<dB.length; j++){
+                        dB[j] += part[j];
+                    }
+                }
+            }
+            for(ForkJoinTask<?> task : tasks) task.join();
+        }
+
+        for(int l=0; l<layers.length; l++){
+            layers[l].applyGradients(shards[0].caches[l].dW, shards[0].caches[l].dB, lr);
+        }
+        return predictions;
+    }
+
+    //forward + backward for samples [from, to), gradients left in the shard's caches
+    private void gradients(double[][] inputs, double[][] targets, int from, int to, float scale, Shard shard, double[][] predictions){
+        float[][] a = toFloat(inputs, from, to, shard);
+        for(int i=0; i<layers.length; i++){
+            a = layers[i].forwardBatch(a, dropoutRates[i], shard.caches[i]);
+        }
+
+        //dA of the loss (softmax + cross-entropy), and the predictions back in double
+        FloatNeuronLayer.BatchCache out = shard.caches[layers.length - 1];
+        int size = to - from;
+        int classes = a[0].length;
+        if(!workspace || out.dA == null || out.dA.length != size) out.dA = new float[size][classes];
+        for(int n=0; n<size; n++){
+            double[] yp = predictions[from + n];
+            if(yp == null || yp.length != classes) yp = predictions[from + n] = new double[classes];
+            double[] yt = targets[from + n];
+            for(int i=0; i<classes; i++){
+                yp[i] = a[n][i];
+                out.dA[n][i] = (float) (a[n][i] - yt[i]);
+            }
+        }
+
+        float[][] dA = out.dA;
+        for(int i=layers.length-1; i>=0; i--){
+            dA = layers[i].gradientsBatch(dA, scale, shard.caches[i]);
+        }
+    }
+
+    private float[][] toFloat(double[][] inputs, int from, int to, Shard shard){
+        int size = to - from;
+        int width = inputs[from].length;
+        if(!workspace || shard.inputs == null || shard.inputs.length != size || shard.inputs[0].length != width){
+            shard.inputs = new float[size][width];
+        }
+        for(int n=0; n<size; n++){
+            double[] x = inputs[from + n];
+            float[] xf = shard.inputs[n];
+            for(int j=0; j<width; j++){
+                xf[j] = (float) x[j];
+            }
+        }
+        return shard.inputs;
+    }
+
+    //kept apart from the parallel shards, so a forward or a small batch in between doesn't throw those away
+    private Shard local(){
+        if(local == null) local = newShard();
+        return local;
+    }
+
+    private Shard[] shards(int count){
+        if(shards != null && shards.length == count) return shards;
+        Shard[] created = new Shard[count];
+        for(int s=0; s<count; s++){
+            created[s] = newShard();
+        }
+        shards = created;
+        return created;
+    }
+
+    private Shard newShard(){
+        if(rand == null) rand = new SplittableRandom();     //loaded model that was never seeded
+        Shard shard = new Shard();
+        shard.caches = new FloatNeuronLayer.BatchCache[layers.length];
+        for(int l=0; l<layers.length; l++){
+            shard.caches[l] = new FloatNeuronLayer.BatchCache();
+            shard.caches[l].rand = rand.split();
+        }
+        return shard;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        for(int i=0; i<layers.length; i++){
+            layers[i].defaultActivation(i == layers.length - 1);
+        }
+    }
+}
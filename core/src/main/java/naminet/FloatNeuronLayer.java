@@ -0,0 +1,265 @@
+//a layer of neurons in float32 (NeuralNetwork's single precision mode)       ~template~
+//same maths as NeuronLayer's batch path with half the bytes per weight, activation and optimizer moment
+
+package naminet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+class FloatNeuronLayer implements Serializable{
+    private static final long serialVersionUID = 1L;
+    private static final DenseKernels KERNELS = DenseKernels.INSTANCE;
+
+    private int inputSize;
+    private int outputSize;
+    private float[] w;      //weight, flat row-major like NeuronLayer
+    private float[] b;      //bias
+    private Activation activation;
+    private FloatOptimizer optimizer;   //null for inference only
+
+    private transient boolean workspace;    //reuse the cache buffers (see NeuronLayer)
+    private transient SplittableRandom rand;
+
+    //rand seeds the weights and is then kept for the optimizer
+    FloatNeuronLayer(int inputSize, int outputSize, Activation activation, Optimizer optimizer, SplittableRandom rand){
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.w = new float[outputSize * inputSize];
+        this.b = new float[outputSize];
+        this.activation = activation;
+
+        double std = activation.initScale(inputSize);   //like NeuronLayer
+        for(int k=0; k<w.length; k++){
+            w[k] = (float) (rand.nextGaussian() * std);
+        }
+        setRandom(rand);
+        setOptimizer(optimizer);
+    }
+
+    //a layer read back from a model file (ModelFile)
+    FloatNeuronLayer(int inputSize, int outputSize, float[] w, float[] b, Activation activation, FloatOptimizer optimizer){
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.w = w;
+        this.b = b;
+        this.activation = activation;
+        this.optimizer = optimizer;
+    }
+
+    //what a batch forward pass saw and the gradients its backward pass produced (see NeuronLayer.BatchCache)
+    static class BatchCache{
+        float[][] inputs;
+        float[][] z;
+        float[][] a;
+        boolean[][] dropoutMasks;   //null when no dropout was applied
+        boolean[][] maskBuffer;
+        float[][] dA;       //loss gradient, only on the output layer's cache
+        float[][] dZ;
+        float[][] dAprev;
+        float[] dW;
+        float[] dB;
+        SplittableRandom rand;  //dropout masks, one stream per cache
+    }
+
+    //the layer keeps the float counterpart of optimizer (Optimizer.toFloat), optimizer itself only gives the settings
+    void setOptimizer(Optimizer optimizer){
+        this.optimizer = optimizer == null ? null : optimizer.toFloat();
+        if(this.optimizer != null){
+            this.optimizer.init(w.length, b.length);
+            if(rand != null) this.optimizer.setRandom(rand.split());
+        }
+    }
+
+    void setRandom(SplittableRandom rand){
+        this.rand = rand;
+        if(optimizer != null) optimizer.setRandom(rand.split());
+    }
+
+    void setWorkspaceMode(boolean workspace){
+        this.workspace = workspace;
+    }
+
+    int inputSize(){
+        return inputSize;
+    }
+
+    int outputSize(){
+        return outputSize;
+    }
+
+    float[] weights(){
+        return w;
+    }
+
+    float[] biases(){
+        return b;
+    }
+
+    FloatOptimizer optimizer(){
+        return optimizer;
+    }
+
+    Activation activation(){
+        return activation;
+    }
+
+    //see NeuronLayer.defaultActivation
+    void defaultActivation(boolean isOutputLayer){
+        if(activation == null) activation = Activation.standard(isOutputLayer);
+    }
+
+    private float[] scratch(float[] buf, int size){
+        if(workspace && buf != null && buf.length == size){
+            Arrays.fill(buf, 0f);
+            return buf;
+        }
+        return new float[size];
+    }
+
+    private float[][] scratch(float[][] buf, int rows, int cols){
+        if(workspace && buf != null && buf.length == rows){
+            for(int n=0; n<rows; n++){
+                buf[n] = scratch(buf[n], cols);
+            }
+            return buf;
+        }
+        return new float[rows][cols];
+    }
+
+    private boolean[][] scratch(boolean[][] buf, int rows, int cols){
+        if(workspace && buf != null && buf.length == rows && buf[0].length == cols){
+            return buf;
+        }
+        return new boolean[rows][cols];
+    }
+
+    //inference for count samples at once (see NeuronLayer.predictBatch)
+    void predictBatch(float[] in, int inFrom, int count, float[] out){
+        KERNELS.matmulT(in, inFrom, count, w, 0, outputSize, inputSize, out, 0);
+        for(int n=0; n<count; n++){
+            int row = n * outputSize;
+            for(int i=0; i<outputSize; i++){
+                out[row + i] += b[i];
+            }
+        }
+        activation.apply(out, out, 0, count, outputSize);
+    }
+
+    float[][] forwardBatch(float[][] inputs, double dropoutRate, BatchCache cache){
+        int batchSize = inputs.length;
+        float[][] z = scratch(cache.z, batchSize, outputSize);
+
+        //Z = X * W^T + b, one weight row at a time so it stays hot across the batch
+        for(int i=0; i<outputSize; i++){
+            int row = i * inputSize;
+            float bi = b[i];
+            for(int n=0; n<batchSize; n++){
+                z[n][i] = bi + KERNELS.dot(w, row, inputs[n], 0, inputSize);
+            }
+        }
+
+        float[][] a = scratch(cache.a, batchSize, outputSize);
+        for(int n=0; n<batchSize; n++){
+            activation.apply(z[n], a[n], 0, 1, outputSize);
+        }
+
+        //neuron dropouts (own mask per sample)
+        boolean[][] masks = null;
+        if(dropoutRate > 0){
+            if(cache.rand == null) cache.rand = new SplittableRandom();
+            masks = scratch(cache.maskBuffer, batchSize, outputSize);
+            cache.maskBuffer = masks;
+            float keep = (float) (1.0 / (1.0 - dropoutRate));
+            for(int n=0; n<batchSize; n++){
+                for(int i=0; i<outputSize; i++){
+                    if(cache.rand.nextDouble() < dropoutRate){
+                        a[n][i] = 0f;
+                        masks[n][i] = false;
+                    }else{
+                        a[n][i] *= keep;
+                        masks[n][i] = true;
+                    }
+                }
+            }
+        }
+
+        cache.inputs = inputs;
+        cache.z = z;
+        cache.a = a;
+        cache.dropoutMasks = masks;
+        return a;
+    }
+
+    //fills cache.dW/dB with scale * the batch gradient (no optimizer step), returns dA for the previous layer
+    float[][] gradientsBatch(float[][] dA, float scale, BatchCache cache){
+        int batchSize = dA.length;
+        float[][] dZ = scratch(cache.dZ, batchSize, outputSize);
+        for(int n=0; n<batchSize; n++){
+            activation.backward(cache.z[n], dA[n], dZ[n], outputSize);
+            if(cache.dropoutMasks != null){
+                for(int i=0; i<outputSize; i++){
+                    if(!cache.dropoutMasks[n][i]) dZ[n][i] = 0f;
+                }
+            }
+        }
+
+        //gradient for previous layer (with the weights the forward pass used)
+        float[][] dAprev = scratch(cache.dAprev, batchSize, inputSize);
+        for(int n=0; n<batchSize; n++){
+            float[] dAn = dAprev[n];
+            for(int i=0; i<outputSize; i++){
+                float dz = dZ[n][i];
+                if(dz == 0f) continue;
+                KERNELS.axpy(dz, w, i * inputSize, dAn, 0, inputSize);
+            }
+        }
+
+        //dW = scale * dZ^T * X, dB = scale * column sums of dZ
+        float[] dW = scratch(cache.dW, outputSize * inputSize);
+        float[] dB = scratch(cache.dB, outputSize);
+        for(int i=0; i<outputSize; i++){
+            int row = i * inputSize;
+            for(int n=0; n<batchSize; n++){
+                float dz = dZ[n][i] * scale;
+                if(dz == 0f) continue;
+                dB[i] += dz;
+                KERNELS.axpy(dz, cache.inputs[n], 0, dW, row, inputSize);
+            }
+        }
+
+        cache.dZ = dZ;
+        cache.dAprev = dAprev;
+        cache.dW = dW;
+        cache.dB = dB;
+        return dAprev;
+    }
+
+    //one optimizer step with gradients summed up elsewhere
+    void applyGradients(float[] dW, float[] dB, double lr){
+        if(optimizer == null){
+            throw new IllegalStateException("layer has no optimizer (inference only), call setOptimizer first");
+        }
+        optimizer.beginStep();
+        optimizer.updateWeights(w, 0, dW, 0, w.length, lr);
+        optimizer.updateBiases(b, dB, lr);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        ObjectInputStream.GetField fields = in.readFields();
+        inputSize = fields.get("inputSize", 0);
+        outputSize = fields.get("outputSize", 0);
+        w = (float[]) fields.get("w", null);
+        b = (float[]) fields.get("b", null);
+        activation = (Activation) fields.get("activation", null);
+
+        Object saved = fields.get("optimizer", null);
+        if(saved instanceof Optimizer settings){    //saved before FloatOptimizer, its float moments don't carry over
+            setOptimizer(settings);
+        }else{
+            optimizer = (FloatOptimizer) saved;
+        }
+    }
+}
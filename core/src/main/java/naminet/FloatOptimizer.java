@@ -0,0 +1,310 @@
+//optimizers for float32 layers (FloatNeuronLayer): the maths of Optimizer with the state kept in floats
+//a layer gets one from Optimizer.toFloat, so every optimizer only holds (and saves) the state of its own precision
+
+package naminet;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+interface FloatOptimizer extends Serializable{
+    void init(int weightCount, int biasCount);     //allocate state for a layer of this size
+    void beginStep();                               //once per optimizer step, before any update
+    void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr);    //w[from..from+count) with grad[gradFrom..]
+    void updateBiases(float[] b, float[] grad, double lr);
+    default void setRandom(RandomGenerator rand){}  //for optimizers that draw random numbers
+
+    //checkpoint files (ModelFile): written like Optimizer.write, the hyperparameters being those of the Optimizer it came from
+    double[] hyperparameters();
+    void writeState(ModelFile.Writer out) throws IOException;
+    void readState(ModelFile.Reader in);
+
+    static void write(FloatOptimizer optimizer, ModelFile.Writer out) throws IOException{
+        out.putString(optimizer.getClass().getSimpleName());
+        out.putDoubles(optimizer.hyperparameters());
+        optimizer.writeState(out);
+    }
+
+    static FloatOptimizer read(ModelFile.Reader in){
+        String name = in.getString();
+        FloatOptimizer optimizer = Optimizer.create(name, in.getDoubles()).toFloat();
+        optimizer.readState(in);
+        return optimizer;
+    }
+
+    static float clip(float grad, float clipValue){
+        return Math.max(-clipValue, Math.min(clipValue, grad));
+    }
+
+    //see Optimizer.SGD
+    class SGD implements FloatOptimizer{
+        private static final long serialVersionUID = 1L;
+        private final double weightDecay;
+        private final double clipValue;
+
+        SGD(double weightDecay, double clipValue){
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){}
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{weightDecay, clipValue};
+        }
+        public void writeState(ModelFile.Writer out){}
+        public void readState(ModelFile.Reader in){}
+
+        public void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr){
+            float decay = (float) weightDecay, clip = (float) clipValue, rate = (float) lr;
+            for(int k=0; k<count; k++){
+                float g = clip(grad[gradFrom + k] + decay * w[from + k], clip);
+                w[from + k] -= rate * g;
+            }
+        }
+
+        public void updateBiases(float[] b, float[] grad, double lr){
+            float rate = (float) lr;
+            for(int i=0; i<b.length; i++){
+                b[i] -= rate * grad[i];
+            }
+        }
+    }
+
+    //see Optimizer.Momentum
+    class Momentum implements FloatOptimizer{
+        private static final long serialVersionUID = 1L;
+        private final double momentum;
+        private final double weightDecay;
+        private final double clipValue;
+        private float[] vW;
+        private float[] vB;
+
+        Momentum(double momentum, double weightDecay, double clipValue){
+            this.momentum = momentum;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){
+            vW = new float[weightCount];
+            vB = new float[biasCount];
+        }
+
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{momentum, weightDecay, clipValue};
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putFloats(vW);
+            out.putFloats(vB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            vW = in.getFloats();
+            vB = in.getFloats();
+        }
+
+        public void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr){
+            float mu = (float) momentum, decay = (float) weightDecay, clip = (float) clipValue, rate = (float) lr;
+            for(int k=0; k<count; k++){
+                float g = clip(grad[gradFrom + k] + decay * w[from + k], clip);
+                vW[from + k] = mu * vW[from + k] + g;
+                w[from + k] -= rate * vW[from + k];
+            }
+        }
+
+        public void updateBiases(float[] b, float[] grad, double lr){
+            float mu = (float) momentum, rate = (float) lr;
+            for(int i=0; i<b.length; i++){
+                vB[i] = mu * vB[i] + grad[i];
+                b[i] -= rate * vB[i];
+            }
+        }
+    }
+
+    //see Optimizer.RMSProp
+    class RMSProp implements FloatOptimizer{
+        private static final long serialVersionUID = 1L;
+        private final double rho;
+        private final double epsilon;
+        private final double weightDecay;
+        private final double clipValue;
+        private float[] sW;
+        private float[] sB;
+
+        RMSProp(double rho, double epsilon, double weightDecay, double clipValue){
+            this.rho = rho;
+            this.epsilon = epsilon;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){
+            sW = new float[weightCount];
+            sB = new float[biasCount];
+        }
+
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{rho, epsilon, weightDecay, clipValue};
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putFloats(sW);
+            out.putFloats(sB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            sW = in.getFloats();
+            sB = in.getFloats();
+        }
+
+        public void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr){
+            float r = (float) rho, eps = (float) epsilon, decay = (float) weightDecay, clip = (float) clipValue, rate = (float) lr;
+            for(int k=0; k<count; k++){
+                float g = clip(grad[gradFrom + k] + decay * w[from + k], clip);
+                sW[from + k] = r * sW[from + k] + (1 - r) * g * g;
+                w[from + k] -= rate * g / ((float) Math.sqrt(sW[from + k]) + eps);
+            }
+        }
+
+        public void updateBiases(float[] b, float[] grad, double lr){
+            float r = (float) rho, eps = (float) epsilon, rate = (float) lr;
+            for(int i=0; i<b.length; i++){
+                sB[i] = r * sB[i] + (1 - r) * grad[i] * grad[i];
+                b[i] -= rate * grad[i] / ((float) Math.sqrt(sB[i]) + eps);
+            }
+        }
+    }
+
+    //see Optimizer.Adam
+    class Adam implements FloatOptimizer{
+        private static final long serialVersionUID = 1L;
+        protected final double beta1;
+        protected final double beta2;
+        protected final double epsilon;
+        protected final double weightDecay;
+        protected final double clipValue;
+        protected float[] mW;
+        protected float[] vW;
+        protected float[] mB;
+        protected float[] vB;
+        protected int t;
+        protected transient double correction1;     //1 - beta^t for the current step
+        protected transient double correction2;
+        private transient RandomGenerator rand;     //plateau noise, not saved with the model
+
+        Adam(double beta1, double beta2, double epsilon, double weightDecay, double clipValue){
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){
+            mW = new float[weightCount];
+            vW = new float[weightCount];
+            mB = new float[biasCount];
+            vB = new float[biasCount];
+            t = 0;
+        }
+
+        @Override
+        public void setRandom(RandomGenerator rand){
+            this.rand = rand;
+        }
+
+        public double[] hyperparameters(){
+            return new double[]{beta1, beta2, epsilon, weightDecay, clipValue};
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putInt(t);
+            out.putFloats(mW);
+            out.putFloats(vW);
+            out.putFloats(mB);
+            out.putFloats(vB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            t = in.getInt();
+            mW = in.getFloats();
+            vW = in.getFloats();
+            mB = in.getFloats();
+            vB = in.getFloats();
+        }
+
+        public void beginStep(){
+            if(rand == null) rand = new SplittableRandom();    //nobody seeded us
+            t++;
+            correction1 = 1 - Math.pow(beta1, t);
+            correction2 = 1 - Math.pow(beta2, t);
+        }
+
+        public void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr){
+            float b1 = (float) beta1, b2 = (float) beta2, eps = (float) epsilon, decay = (float) weightDecay, clip = (float) clipValue;
+            float c1 = (float) correction1, c2 = (float) correction2, rate = (float) lr;
+            for(int k=0; k<count; k++){
+                int p = from + k;
+                float g = clip(grad[gradFrom + k] + (decay * w[p]), clip);
+                float noise = (float) ((rand.nextDouble() - 0.5) * 2e-6);
+
+                mW[p] = b1 * mW[p] + (1 - b1) * g;
+                vW[p] = b2 * vW[p] + (1 - b2) * g * g;
+
+                float mHat = mW[p] / c1;
+                float vHat = vW[p] / c2;
+
+                w[p] -= rate * mHat / ((float) Math.sqrt(vHat) + eps) + noise;
+            }
+        }
+
+        public void updateBiases(float[] b, float[] grad, double lr){
+            float b1 = (float) beta1, b2 = (float) beta2, eps = (float) epsilon;
+            float c1 = (float) correction1, c2 = (float) correction2, rate = (float) lr;
+            for(int i=0; i<b.length; i++){
+                mB[i] = b1 * mB[i] + (1 - b1) * grad[i];
+                vB[i] = b2 * vB[i] + (1 - b2) * grad[i] * grad[i];
+
+                float mHat = mB[i] / c1;
+                float vHat = vB[i] / c2;
+
+                b[i] -= rate * mHat / ((float) Math.sqrt(vHat) + eps);
+            }
+        }
+    }
+
+    //see Optimizer.AdamW
+    class AdamW extends Adam{
+        private static final long serialVersionUID = 1L;
+
+        AdamW(double beta1, double beta2, double epsilon, double weightDecay, double clipValue){
+            super(beta1, beta2, epsilon, weightDecay, clipValue);
+        }
+
+        @Override
+        public void updateWeights(float[] w, int from, float[] grad, int gradFrom, int count, double lr){
+            float b1 = (float) beta1, b2 = (float) beta2, eps = (float) epsilon, decay = (float) weightDecay, clip = (float) clipValue;
+            float c1 = (float) correction1, c2 = (float) correction2, rate = (float) lr;
+            for(int k=0; k<count; k++){
+                int p = from + k;
+                float g = clip(grad[gradFrom + k], clip);
+
+                mW[p] = b1 * mW[p] + (1 - b1) * g;
+                vW[p] = b2 * vW[p] + (1 - b2) * g * g;
+
+                float mHat = mW[p] / c1;
+                float vHat = vW[p] / c2;
+
+                w[p] -= rate * (mHat / ((float) Math.sqrt(vHat) + eps) + decay * w[p]);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+//math functions        ~template~
+
+package naminet;
+
+class Functions{
+    //activations are in Activation, applied by each layer over whole rows
+
+    //softmax - output
+    public static double[] softmax(double[] input){
+        return softmax(input, new double[input.length]);
+    }
+
+    //softmax into a caller-provided array (can be input itself)
+    public static double[] softmax(double[] input, double[] exps){
+        double max = Double.NEGATIVE_INFINITY;
+
+        //find max in input
+        for(double i : input){
+            if (i > max) max = i;
+        }
+
+        double sum = 0.0;
+        //calculate exponentials and sum of it
+        for(int i=0; i<input.length; i++){
+            exps[i] = Math.exp(input[i] - max);
+            sum += exps[i];
+        }
+
+        //normalize
+        for(int i=0; i<input.length; i++){
+            exps[i] /= sum;
+        }
+
+        return exps;
+    }
+
+    //softmax of z[from..from+count) in place, one row of a flat batch; same steps as above
+    public static void softmax(double[] z, int from, int count){
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i=from; i<from+count; i++){
+            if (z[i] > max) max = z[i];
+        }
+
+        double sum = 0.0;
+        for(int i=from; i<from+count; i++){
+            z[i] = Math.exp(z[i] - max);
+            sum += z[i];
+        }
+
+        for(int i=from; i<from+count; i++){
+            z[i] /= sum;
+        }
+    }
+
+    public static void softmax(float[] z, int from, int count){
+        float max = Float.NEGATIVE_INFINITY;
+        for(int i=from; i<from+count; i++){
+            if (z[i] > max) max = z[i];
+        }
+
+        double sum = 0.0;
+        for(int i=from; i<from+count; i++){
+            z[i] = (float) Math.exp(z[i] - max);
+            sum += z[i];
+        }
+
+        float inv = (float) (1.0 / sum);
+        for(int i=from; i<from+count; i++){
+            z[i] *= inv;
+        }
+    }
+
+    //float32 softmax, same steps (the sum is kept in double)
+    public static float[] softmax(float[] input, float[] exps){
+        float max = Float.NEGATIVE_INFINITY;
+        for(float i : input){
+            if (i > max) max = i;
+        }
+
+        double sum = 0.0;
+        for(int i=0; i<input.length; i++){
+            exps[i] = (float) Math.exp(input[i] - max);
+            sum += exps[i];
+        }
+
+        float inv = (float) (1.0 / sum);
+        for(int i=0; i<input.length; i++){
+            exps[i] *= inv;
+        }
+
+        return exps;
+    }
+
+    //MSE
+    public static double meanSquaredError(double[] yp, double[] yt){
+        double loss = 0.0;
+        for(int i=0; i<yp.length; i++){
+            double diff = yp[i] - yt[i];
+            loss += diff * diff;
+        }
+        return loss / yp.length;
+    }
+    public static double[] meanSquaredErrorDerivatives(double[] yp, double[] yt){
+        double[] grad = new double[yp.length];
+        for(int i=0; i<yp.length; i++){
+            grad[i] = 2 * (yp[i] - yt[i]) / yp.length;
+        }
+        return grad;
+    }
+
+    //cross-entropy (used with softmax)
+    public static double crossEntropyLoss(double[] yp, double[] yt){
+        double epsilon = 1e-8;      //avoid log(0)
+        double loss = 0.0;
+        for(int i=0; i<yp.length; i++){
+            double p = Math.max(epsilon, yp[i]);
+            double q = Math.max(epsilon, yt[i]);
+            loss += q * Math.log(p);
+        }
+
+        return -loss;
+    }
+    public static double[] crossEntropyLossDerivatives(double[] yp, double[] yt){
+        return crossEntropyLossDerivatives(yp, yt, new double[yp.length]);
+    }
+    public static double[] crossEntropyLossDerivatives(double[] yp, double[] yt, double[] grad){
+        for(int i=0; i<yp.length; i++){
+            grad[i] = yp[i] - yt[i];
+        }
+        return grad;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+//a read-only view of a trained network for predicting: the forward pass only reads the weights and keeps every
+//intermediate in the caller's buffers (a Workspace), so one instance can be shared by any number of threads,
+//platform or virtual, without locks
+//NeuralNetwork.toInferenceModel() gives an immutable one with its own copy of the weights,
+//NeuralNetwork's own predict/predictBatch run through a view of its live layers,
+//an int8 one (QuantizedLayer) comes from QuantizedLayer.quantize or an int8 model file (ModelSaver.loadInferenceModel)
+
+package naminet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+final class InferenceModel{
+    static final int TILE = 64;     //samples per pass through the layers in predictBatch, so a tile's activations stay in cache
+
+    private final NeuronLayer[] layers;             //null in single precision
+    private final FloatNeuronLayer[] floatLayers;   //null in double precision
+    private final QuantizedLayer[] quantizedLayers; //int8, null unless quantized
+    private final int inputSize;
+    private final int outputSize;
+    private final int widest;       //largest layer output, sizes the workspace buffers
+
+    //exactly one of the two is non-null; only their read-only predictBatch is ever called
+    InferenceModel(NeuronLayer[] layers, FloatNeuronLayer[] floatLayers){
+        this(layers, floatLayers, null);
+    }
+
+    InferenceModel(QuantizedLayer[] quantizedLayers){
+        this(null, null, quantizedLayers);
+    }
+
+    private InferenceModel(NeuronLayer[] layers, FloatNeuronLayer[] floatLayers, QuantizedLayer[] quantizedLayers){
+        this.layers = layers;
+        this.floatLayers = floatLayers;
+        this.quantizedLayers = quantizedLayers;
+        int widest = 0;
+        if(quantizedLayers != null){
+            inputSize = quantizedLayers[0].inputSize();
+            outputSize = quantizedLayers[quantizedLayers.length - 1].outputSize();
+            for(QuantizedLayer layer : quantizedLayers){
+                widest = Math.max(widest, layer.outputSize());
+            }
+        }else if(floatLayers != null){
+            inputSize = floatLayers[0].inputSize();
+            outputSize = floatLayers[floatLayers.length - 1].outputSize();
+            for(FloatNeuronLayer layer : floatLayers){
+                widest = Math.max(widest, layer.outputSize());
+            }
+        }else{
+            inputSize = layers[0].inputSize();
+            outputSize = layers[layers.length - 1].outputSize();
+            for(NeuronLayer layer : layers){
+                widest = Math.max(widest, layer.outputSize());
+            }
+        }
+        this.widest = widest;
+    }
+
+    //scratch for one thread at a time (never share one between threads), reuse it across calls to skip allocating it
+    static final class Workspace{
+        private final double[] tile;    //gathered input rows
+        private final double[] ping;    //activations, alternating between layers
+        private final double[] pong;
+        private final float[] floatTile;
+        private final float[] floatPing;
+        private final float[] floatPong;
+        private final byte[] quantized;     //int8: a layer's input rows quantized
+        private final int[] sums;           //int8: their int32 products with the weights
+
+        private Workspace(InferenceModel model, int rows){
+            boolean single = model.floatLayers != null;
+            boolean int8 = model.quantizedLayers != null;
+            tile = single ? null : new double[rows * model.inputSize];
+            ping = single ? null : new double[rows * model.widest];
+            pong = single ? null : new double[rows * model.widest];
+            floatTile = single ? new float[rows * model.inputSize] : null;
+            floatPing = single ? new float[rows * model.widest] : null;
+            floatPong = single ? new float[rows * model.widest] : null;
+            quantized = int8 ? new byte[rows * Math.max(model.inputSize, model.widest)] : null;
+            sums = int8 ? new int[rows * model.widest] : null;
+        }
+    }
+
+    public Workspace newWorkspace(){
+        return new Workspace(this, TILE);
+    }
+
+    public int inputSize(){
+        return inputSize;
+    }
+
+    public int outputSize(){
+        return outputSize;
+    }
+
+    public boolean isSinglePrecision(){
+        return floatLayers != null;
+    }
+
+    public boolean isQuantized(){
+        return quantizedLayers != null;
+    }
+
+    QuantizedLayer[] quantizedLayers(){     //null unless quantized
+        return quantizedLayers;
+    }
+
+    //class probabilities of one image
+    public double[] predict(double[] input){
+        return predict(input, new Workspace(this, 1));
+    }
+
+    public double[] predict(double[] input, Workspace workspace){
+        if(input.length != inputSize){
+            throw new IllegalArgumentException("expected " + inputSize + " values, got " + input.length);
+        }
+        double[] out = new double[outputSize];
+        forward(null, input, 0, 1, workspace, out, 0);
+        return out;
+    }
+
+    //batched predict: each layer runs as one matrix-matrix product over a tile of samples
+    //instead of a dot product per neuron per sample; same probabilities as predict up to rounding
+    public Predictions predictBatch(double[][] inputs){
+        return predictBatch(inputs, null);
+    }
+
+    //pool splits the batch across its threads, null keeps it on the calling thread
+    public Predictions predictBatch(double[][] inputs, ForkJoinPool pool){
+        return predictBatch(inputs, null, inputs.length, pool);
+    }
+
+    //flat variant: count samples of inputSize() values back to back, read in place (no per-sample arrays at all);
+    //anything in inputs past the count samples is ignored, so a buffer sized for the largest batch can be reused
+    public Predictions predictBatch(double[] inputs, int count){
+        return predictBatch(inputs, count, newWorkspace());
+    }
+
+    public Predictions predictBatch(double[] inputs, int count, ForkJoinPool pool){
+        checkFlat(inputs, count);
+        return predictBatch(null, inputs, count, pool);
+    }
+
+    //on the calling thread with the caller's workspace (newWorkspace), for a thread that scores batch after batch
+    public Predictions predictBatch(double[] inputs, int count, Workspace workspace){
+        checkFlat(inputs, count);
+        Predictions out = new Predictions(count, outputSize);
+        predictRange(null, inputs, 0, count, workspace, out);
+        return out;
+    }
+
+    private void checkFlat(double[] inputs, int count){
+        if(inputs.length < count * inputSize){
+            throw new IllegalArgumentException("expected " + count + " x " + inputSize + " values, got " + inputs.length);
+        }
+    }
+
+    private Predictions predictBatch(double[][] rows, double[] flat, int count, ForkJoinPool pool){
+        Predictions out = new Predictions(count, outputSize);
+        int parts = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), (count + TILE - 1) / TILE));
+        if(parts == 1){
+            predictRange(rows, flat, 0, count, newWorkspace(), out);
+            return out;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int p=0; p<parts; p++){
+            int from = p * count / parts;
+            int to = (p + 1) * count / parts;
+            tasks.add(pool.submit(() -> predictRange(rows, flat, from, to, newWorkspace(), out)));
+        }
+        for(ForkJoinTask<?> task : tasks) task.join();
+        return out;
+    }
+
+    //samples [from, to) a tile at a time, workspace being this range's own
+    private void predictRange(double[][] rows, double[] flat, int from, int to, Workspace workspace, Predictions out){
+        for(int start=from; start<to; start+=TILE){
+            int count = Math.min(TILE, to - start);
+            forward(rows, flat, start, count, workspace, out.probabilities(), start * outputSize);
+            out.label(start, start + count);
+        }
+    }
+
+    //count samples from sample start (rows[start..], or flat from start * inputSize) through every layer,
+    //their probabilities written to probabilities[outFrom..]
+    private void forward(double[][] rows, double[] flat, int start, int count, Workspace ws, double[] probabilities, int outFrom){
+        if(floatLayers != null){
+            float[] a = ws.floatTile;
+            for(int n=0; n<count; n++){
+                double[] x = rows != null ? rows[start + n] : flat;
+                int xFrom = rows != null ? 0 : (start + n) * inputSize;
+                for(int j=0; j<inputSize; j++){
+                    a[n * inputSize + j] = (float) x[xFrom + j];
+                }
+            }
+            for(int i=0; i<floatLayers.length; i++){
+                float[] next = (i % 2 == 0) ? ws.floatPing : ws.floatPong;
+                floatLayers[i].predictBatch(a, 0, count, next);
+                a = next;
+            }
+            for(int k=0; k<count*outputSize; k++){
+                probabilities[outFrom + k] = a[k];
+            }
+            return;
+        }
+
+        double[] a = flat;
+        int aFrom = start * inputSize;
+        if(rows != null){
+            for(int n=0; n<count; n++){
+                System.arraycopy(rows[start + n], 0, ws.tile, n * inputSize, inputSize);
+            }
+            a = ws.tile;
+            aFrom = 0;
+        }
+        int layerCount = quantizedLayers != null ? quantizedLayers.length : layers.length;
+        for(int i=0; i<layerCount; i++){
+            double[] next = (i % 2 == 0) ? ws.ping : ws.pong;
+            if(quantizedLayers != null){
+                quantizedLayers[i].predictBatch(a, aFrom, count, ws.quantized, ws.sums, next);
+            }else{
+                layers[i].predictBatch(a, aFrom, count, next);
+            }
+            a = next;
+            aFrom = 0;
+        }
+        System.arraycopy(a, 0, probabilities, outFrom, count * outputSize);
+    }
+}
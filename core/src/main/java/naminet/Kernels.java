@@ -0,0 +1,67 @@
+//3x3 image filters split into a row pass and a column pass      ~template~
+//both passes only keep a 3-tap window in locals, so out can be the source itself and nothing is allocated
+
+package naminet;
+
+class Kernels{
+    private static final double THIRD = 1.0 / 3.0;
+
+    //box blur, mean of the in-bounds 3x3 neighbourhood (edge pixels average 6, corners 4)
+    public static double[] box3(double[] src, double[] out, int width, int height){
+        for(int y=0; y<height; y++){
+            boxRow(src, out, y * width, 1, width);
+        }
+        for(int x=0; x<width; x++){
+            boxRow(out, out, x, width, height);
+        }
+        return out;
+    }
+
+    //1-2-1 binomial blur (3x3 gaussian / 16), out of bounds counts as 0
+    public static double[] binomial3(double[] src, double[] out, int width, int height){
+        for(int y=0; y<height; y++){
+            binomialRow(src, out, y * width, 1, width, 1.0);
+        }
+        for(int x=0; x<width; x++){
+            binomialRow(out, out, x, width, height, 1.0 / 16.0);
+        }
+        return out;
+    }
+
+    //one line of n pixels starting at start, step apart
+    private static void boxRow(double[] src, double[] out, int start, int step, int n){
+        if(n == 1){
+            out[start] = src[start];
+            return;
+        }
+        double left = src[start];
+        double mid = src[start + step];
+        out[start] = (left + mid) * 0.5;
+        int p = start + step;
+        for(int i=1; i<n-1; i++, p+=step){  //interior, no bounds checks
+            double right = src[p + step];
+            out[p] = (left + mid + right) * THIRD;
+            left = mid;
+            mid = right;
+        }
+        out[p] = (left + mid) * 0.5;
+    }
+
+    private static void binomialRow(double[] src, double[] out, int start, int step, int n, double scale){
+        if(n == 1){
+            out[start] = 2 * src[start] * scale;
+            return;
+        }
+        double left = src[start];
+        double mid = src[start + step];
+        out[start] = (2 * left + mid) * scale;
+        int p = start + step;
+        for(int i=1; i<n-1; i++, p+=step){
+            double right = src[p + step];
+            out[p] = (left + 2 * mid + right) * scale;
+            left = mid;
+            mid = right;
+        }
+        out[p] = (left + 2 * mid) * scale;
+    }
+}
@@ -0,0 +1,473 @@
+//the binary model file (what ModelSaver writes), read through a memory-mapped FileChannel
+//all numbers are little-endian, strings are an int byte count + UTF-8:
+//
+//  header     int magic 0x494D414E ("NAMI"), int version (2), int kind (0 inference, 1 checkpoint),
+//             int bytes per weight (8 double, 4 float32, 1 int8), int layer count L
+//  topology   L+1 ints, the layer sizes from input to output
+//  layers     per layer: int activation (Activation.id: 0 leaky ReLU, 1 softmax, 2 ReLU, 3 sigmoid, 4 tanh),
+//             double dropout rate
+//  blocks     per layer: weights [outputSize][inputSize] row-major, then biases [outputSize],
+//             each block starting at a multiple of 8 bytes
+//             int8 (see QuantizedLayer): double input scale, double row scales [outputSize], int8 weights, double biases
+//  optimizer  checkpoint only, per layer: int present (0/1), then name, hyperparameters and state
+//             (see Optimizer.write, FloatOptimizer.write for float32 models)
+//
+//version 1 wrote each optimizer's state in both precisions, the unused arrays as length -1; it still loads
+//
+//an inference file stops after the blocks; loading a checkpoint for inference never touches its optimizer pages
+//int8 files are always inference files and only load as an InferenceModel (loadInferenceModel)
+
+package naminet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class ModelFile{
+    static final int MAGIC = 0x494D414E;
+    static final int VERSION = 2;
+    static final int INFERENCE = 0;
+    static final int CHECKPOINT = 1;
+    static final int INT8 = 1;      //bytes per weight of a quantized model
+
+    private ModelFile(){}
+
+    //true when the file starts with the magic, false for anything else (e.g. a Java serialized model)
+    static boolean isModelFile(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while(head.hasRemaining() && channel.read(head) >= 0);
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        }
+    }
+
+    static void save(NeuralNetwork net, Path path, boolean checkpoint) throws IOException{
+        FloatNetwork single = net.floatNetwork();
+        double[] dropoutRates = net.dropoutRates();
+        int[] sizes;
+        Optimizer[] optimizers = null;
+        FloatOptimizer[] floatOptimizers = null;
+        Activation[] activations;
+        if(single != null){
+            FloatNeuronLayer[] layers = single.layers();
+            sizes = new int[layers.length + 1];
+            floatOptimizers = new FloatOptimizer[layers.length];
+            activations = new Activation[layers.length];
+            sizes[0] = layers[0].inputSize();
+            for(int l=0; l<layers.length; l++){
+                sizes[l + 1] = layers[l].outputSize();
+                floatOptimizers[l] = layers[l].optimizer();
+                activations[l] = layers[l].activation();
+            }
+        }else{
+            NeuronLayer[] layers = net.layers();
+            sizes = new int[layers.length + 1];
+            optimizers = new Optimizer[layers.length];
+            activations = new Activation[layers.length];
+            sizes[0] = layers[0].inputSize();
+            for(int l=0; l<layers.length; l++){
+                sizes[l + 1] = layers[l].outputSize();
+                optimizers[l] = layers[l].optimizer();
+                activations[l] = layers[l].activation();
+            }
+        }
+        int layerCount = sizes.length - 1;
+
+        try(Writer out = new Writer(path)){
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(checkpoint ? CHECKPOINT : INFERENCE);
+            out.putInt(single != null ? Float.BYTES : Double.BYTES);
+            out.putInt(layerCount);
+            for(int size : sizes){
+                out.putInt(size);
+            }
+            for(int l=0; l<layerCount; l++){
+                out.putInt(activations[l].id());
+                out.putDouble(dropoutRates[l]);
+            }
+
+            for(int l=0; l<layerCount; l++){
+                if(single != null){
+                    FloatNeuronLayer layer = single.layers()[l];
+                    out.align();
+                    out.putFloatBlock(layer.weights());
+                    out.align();
+                    out.putFloatBlock(layer.biases());
+                }else{
+                    NeuronLayer layer = net.layers()[l];
+                    out.align();
+                    out.putDoubleBlock(layer.weights());
+                    out.align();
+                    out.putDoubleBlock(layer.biases());
+                }
+            }
+
+            if(checkpoint){
+                for(int l=0; l<layerCount; l++){
+                    if(single != null){
+                        out.putInt(floatOptimizers[l] == null ? 0 : 1);
+                        if(floatOptimizers[l] != null) FloatOptimizer.write(floatOptimizers[l], out);
+                    }else{
+                        out.putInt(optimizers[l] == null ? 0 : 1);
+                        if(optimizers[l] != null) Optimizer.write(optimizers[l], out);
+                    }
+                }
+            }
+        }
+    }
+
+    //withOptimizers=false leaves every layer without an optimizer (inference only, see NeuralNetwork.setOptimizer)
+    static NeuralNetwork load(Path path, boolean withOptimizers) throws IOException{
+        Reader in = new Reader(map(path));
+        Header header = readHeader(in, path);
+        if(header.precision == INT8) throw new IOException(path + " is an int8 model, it only loads for inference (loadInferenceModel)");
+        int kind = header.kind;
+        int precision = header.precision;
+        int[] sizes = header.sizes;
+        double[] dropoutRates = header.dropoutRates;
+        Activation[] activations = header.activations;
+        int layerCount = dropoutRates.length;
+
+        double[][] w = new double[layerCount][];
+        double[][] b = new double[layerCount][];
+        float[][] wf = new float[layerCount][];
+        float[][] bf = new float[layerCount][];
+        for(int l=0; l<layerCount; l++){
+            int weights = sizes[l] * sizes[l + 1];
+            if(precision == Float.BYTES){
+                in.align();
+                wf[l] = in.getFloatBlock(weights);
+                in.align();
+                bf[l] = in.getFloatBlock(sizes[l + 1]);
+            }else{
+                in.align();
+                w[l] = in.getDoubleBlock(weights);
+                in.align();
+                b[l] = in.getDoubleBlock(sizes[l + 1]);
+            }
+        }
+
+        Optimizer[] optimizers = new Optimizer[layerCount];
+        FloatOptimizer[] floatOptimizers = new FloatOptimizer[layerCount];
+        if(withOptimizers && kind == CHECKPOINT){
+            in.legacyState = header.version == 1;
+            for(int l=0; l<layerCount; l++){
+                if(in.getInt() == 0) continue;
+                if(precision == Float.BYTES){
+                    floatOptimizers[l] = FloatOptimizer.read(in);
+                }else{
+                    optimizers[l] = Optimizer.read(in);
+                    if(in.legacyState) in.skipNullArrays();  //the float arrays come after the double ones
+                }
+            }
+        }
+
+        if(precision == Float.BYTES){
+            FloatNeuronLayer[] layers = new FloatNeuronLayer[layerCount];
+            for(int l=0; l<layerCount; l++){
+                layers[l] = new FloatNeuronLayer(sizes[l], sizes[l + 1], wf[l], bf[l], activations[l], floatOptimizers[l]);
+            }
+            return new NeuralNetwork(new FloatNetwork(layers, dropoutRates), dropoutRates);
+        }
+        NeuronLayer[] layers = new NeuronLayer[layerCount];
+        for(int l=0; l<layerCount; l++){
+            layers[l] = new NeuronLayer(sizes[l], sizes[l + 1], w[l], b[l], activations[l], optimizers[l]);
+        }
+        return new NeuralNetwork(layers, dropoutRates);
+    }
+
+    //an int8 model (QuantizedLayer), always an inference file
+    static void saveQuantized(QuantizedLayer[] layers, Path path) throws IOException{
+        try(Writer out = new Writer(path)){
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(INFERENCE);
+            out.putInt(INT8);
+            out.putInt(layers.length);
+            out.putInt(layers[0].inputSize());
+            for(QuantizedLayer layer : layers){
+                out.putInt(layer.outputSize());
+            }
+            for(int l=0; l<layers.length; l++){
+                out.putInt(layers[l].activation().id());
+                out.putDouble(0.0);     //no dropout at inference
+            }
+            for(QuantizedLayer layer : layers){
+                out.align();
+                out.putDouble(layer.inputScale());
+                out.putDoubleBlock(layer.rowScales());
+                out.putByteBlock(layer.weights());
+                out.align();
+                out.putDoubleBlock(layer.biases());
+            }
+        }
+    }
+
+    //any model file ready to predict: an int8 one as is, the others through load(path, false)
+    static InferenceModel loadInferenceModel(Path path) throws IOException{
+        Reader in = new Reader(map(path));
+        Header header = readHeader(in, path);
+        if(header.precision != INT8) return load(path, false).toInferenceModel();
+
+        int[] sizes = header.sizes;
+        QuantizedLayer[] layers = new QuantizedLayer[sizes.length - 1];
+        for(int l=0; l<layers.length; l++){
+            in.align();
+            double inputScale = in.getDouble();
+            double[] rowScales = in.getDoubleBlock(sizes[l + 1]);
+            byte[] w = in.getByteBlock(sizes[l] * sizes[l + 1]);
+            in.align();
+            double[] b = in.getDoubleBlock(sizes[l + 1]);
+            layers[l] = new QuantizedLayer(sizes[l], sizes[l + 1], w, rowScales, inputScale, b, header.activations[l]);
+        }
+        return new InferenceModel(layers);
+    }
+
+    //everything before the blocks
+    private static final class Header{
+        int version;
+        int kind;
+        int precision;
+        int[] sizes;
+        double[] dropoutRates;
+        Activation[] activations;
+    }
+
+    private static Header readHeader(Reader in, Path path) throws IOException{
+        if(in.getInt() != MAGIC) throw new IOException(path + " is not a naminet model file");
+        Header header = new Header();
+        header.version = in.getInt();
+        if(header.version < 1 || header.version > VERSION){
+            throw new IOException(path + ": unsupported model file version " + header.version);
+        }
+        header.kind = in.getInt();
+        header.precision = in.getInt();
+        if(header.precision != Double.BYTES && header.precision != Float.BYTES && header.precision != INT8){
+            throw new IOException(path + ": bad weight size " + header.precision);
+        }
+        int layerCount = in.getInt();
+        //sizes, activations and dropouts have to be in the file before anything is allocated for them
+        if(layerCount <= 0 || (long) layerCount * (Integer.BYTES + Integer.BYTES + Double.BYTES) + Integer.BYTES > in.remaining()){
+            throw new IOException(path + ": bad layer count " + layerCount);
+        }
+
+        header.sizes = new int[layerCount + 1];
+        for(int i=0; i<header.sizes.length; i++){
+            header.sizes[i] = in.getInt();
+            if(header.sizes[i] <= 0) throw new IOException(path + ": bad layer size " + header.sizes[i] + " in the topology");
+        }
+        header.dropoutRates = new double[layerCount];
+        header.activations = new Activation[layerCount];
+        for(int l=0; l<layerCount; l++){
+            int activation = in.getInt();
+            try{
+                header.activations[l] = Activation.of(activation);
+            }catch(IllegalArgumentException e){
+                throw new IOException(path + ": unsupported activation " + activation + " on layer " + l);
+            }
+            header.dropoutRates[l] = in.getDouble();
+        }
+
+        //what the blocks take without the alignment padding, so a truncated or corrupt file fails here
+        long bytes = 0;
+        for(int l=0; l<layerCount && bytes <= in.remaining(); l++){
+            long weights = (long) header.sizes[l] * header.sizes[l + 1];
+            long outputs = header.sizes[l + 1];
+            if(weights > in.remaining()){
+                bytes = weights;    //too big already, and times 8 it could overflow
+            }else{
+                bytes += header.precision == INT8 ? Double.BYTES + outputs * Double.BYTES + weights + outputs * Double.BYTES
+                                                  : (weights + outputs) * header.precision;
+            }
+        }
+        if(bytes > in.remaining()){
+            throw new IOException(path + " is truncated: its weights need more than the " + in.remaining() + " bytes left");
+        }
+        return header;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());   //the mapping outlives the channel
+        }
+    }
+
+    //little-endian reads off the mapped file
+    static final class Reader{
+        private final ByteBuffer buf;
+        boolean legacyState;    //version 1 optimizer state: skip the null arrays of the other precision
+
+        Reader(ByteBuffer buf){
+            this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int remaining(){
+            return buf.remaining();
+        }
+
+        int getInt(){
+            return buf.getInt();
+        }
+
+        double getDouble(){
+            return buf.getDouble();
+        }
+
+        String getString(){
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void align(){
+            buf.position((buf.position() + 7) & ~7);
+        }
+
+        //count raw values, no length in front
+        double[] getDoubleBlock(int count){
+            double[] values = new double[count];
+            buf.asDoubleBuffer().get(values);
+            buf.position(buf.position() + count * Double.BYTES);
+            return values;
+        }
+
+        float[] getFloatBlock(int count){
+            float[] values = new float[count];
+            buf.asFloatBuffer().get(values);
+            buf.position(buf.position() + count * Float.BYTES);
+            return values;
+        }
+
+        byte[] getByteBlock(int count){
+            byte[] values = new byte[count];
+            buf.get(values);
+            return values;
+        }
+
+        //length first (-1 for null), as written by Writer.putDoubles
+        double[] getDoubles(){
+            if(legacyState) skipNullArrays();
+            int count = buf.getInt();
+            return count < 0 ? null : getDoubleBlock(count);
+        }
+
+        float[] getFloats(){
+            if(legacyState) skipNullArrays();
+            int count = buf.getInt();
+            return count < 0 ? null : getFloatBlock(count);
+        }
+
+        //moves past -1 lengths; the ints that can follow an optimizer's state (present, string length) never are -1
+        void skipNullArrays(){
+            while(buf.remaining() >= Integer.BYTES && buf.getInt(buf.position()) == -1){
+                buf.position(buf.position() + Integer.BYTES);
+            }
+        }
+    }
+
+    //little-endian writes through a direct buffer, flushed to the channel whenever it fills up
+    static final class Writer implements AutoCloseable{
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;   //bytes already in the file
+
+        Writer(Path path) throws IOException{
+            Path parent = path.toAbsolutePath().getParent();
+            if(parent != null) Files.createDirectories(parent);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void room(int bytes) throws IOException{
+            if(buf.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException{
+            buf.flip();
+            while(buf.hasRemaining()){
+                flushed += channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        void putInt(int value) throws IOException{
+            room(Integer.BYTES);
+            buf.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException{
+            room(Double.BYTES);
+            buf.putDouble(value);
+        }
+
+        void putString(String value) throws IOException{
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for(byte b : bytes){
+                room(1);
+                buf.put(b);
+            }
+        }
+
+        void align() throws IOException{
+            while(((flushed + buf.position()) & 7) != 0){
+                room(1);
+                buf.put((byte) 0);
+            }
+        }
+
+        void putDoubleBlock(double[] values) throws IOException{
+            for(int from=0; from<values.length; ){
+                room(Double.BYTES);
+                int count = Math.min(values.length - from, buf.remaining() / Double.BYTES);
+                buf.asDoubleBuffer().put(values, from, count);
+                buf.position(buf.position() + count * Double.BYTES);
+                from += count;
+            }
+        }
+
+        void putFloatBlock(float[] values) throws IOException{
+            for(int from=0; from<values.length; ){
+                room(Float.BYTES);
+                int count = Math.min(values.length - from, buf.remaining() / Float.BYTES);
+                buf.asFloatBuffer().put(values, from, count);
+                buf.position(buf.position() + count * Float.BYTES);
+                from += count;
+            }
+        }
+
+        void putByteBlock(byte[] values) throws IOException{
+            for(int from=0; from<values.length; ){
+                room(1);
+                int count = Math.min(values.length - from, buf.remaining());
+                buf.put(values, from, count);
+                from += count;
+            }
+        }
+
+        void putDoubles(double[] values) throws IOException{
+            putInt(values == null ? -1 : values.length);
+            if(values != null) putDoubleBlock(values);
+        }
+
+        void putFloats(float[] values) throws IOException{
+            putInt(values == null ? -1 : values.length);
+            if(values != null) putFloatBlock(values);
+        }
+
+        @Override
+        public void close() throws IOException{
+            try{
+                flush();
+            }finally{
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+//to save trained data  
+
+package naminet;
+
+import java.io.*;
+import java.nio.file.Path;
+
+public class ModelSaver{
+    //checkpoint: weights plus optimizer state, to carry on training later (format in ModelFile)
+    public static void saveModel(NeuralNetwork net, String filename){
+        save(net, filename, true);
+    }
+
+    //weights only, all NamiNet needs to predict
+    public static void saveInference(NeuralNetwork net, String filename){
+        save(net, filename, false);
+    }
+
+    //an int8 model (InferenceModel.isQuantized()), about an eighth of the double one
+    public static void saveQuantized(InferenceModel model, String filename){
+        if(!model.isQuantized()) throw new IllegalArgumentException("not an int8 model");
+        try{
+            ModelFile.saveQuantized(model.quantizedLayers(), Path.of(filename));
+            System.out.println("Model saved to: " + filename);
+        }catch(Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    private static void save(NeuralNetwork net, String filename, boolean checkpoint){
+        try{
+            ModelFile.save(net, Path.of(filename), checkpoint);
+            System.out.println("Model saved to: " + filename);
+        }catch(Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    //everything in the file, optimizer state included
+    public static NeuralNetwork loadModel(String filename){
+        return load(filename, true);
+    }
+
+    //weights only (no optimizer), a checkpoint's optimizer state is skipped without being read
+    public static NeuralNetwork loadInference(String filename){
+        return load(filename, false);
+    }
+
+    //any model ready to predict, int8 ones included (they don't load as a NeuralNetwork)
+    public static InferenceModel loadInferenceModel(String filename){
+        try{
+            if(!ModelFile.isModelFile(Path.of(filename))){
+                NeuralNetwork net = loadInference(filename);
+                return net == null ? null : net.toInferenceModel();
+            }
+            InferenceModel model = ModelFile.loadInferenceModel(Path.of(filename));
+            System.out.println("Model loaded from: " + filename);
+            return model;
+        }catch(Exception e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static NeuralNetwork load(String filename, boolean withOptimizers){
+        try{
+            NeuralNetwork net;
+            if(ModelFile.isModelFile(Path.of(filename))){
+                net = ModelFile.load(Path.of(filename), withOptimizers);
+            }else{
+                net = loadSerialized(filename);     //model saved with Java serialization before ModelFile
+                if(!withOptimizers) net.setOptimizer(null);
+            }
+            System.out.println("Model loaded from: " + filename);
+            return net;
+        }catch(Exception e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static NeuralNetwork loadSerialized(String filename) throws IOException, ClassNotFoundException{
+        try(ObjectInputStream ois = new PackagedInputStream(new FileInputStream(filename))){
+            return (NeuralNetwork) ois.readObject();
+        }
+    }
+
+    //rewrites a model (e.g. an old serialized one) in the current format:
+    //  java -cp naminet-core.jar naminet.ModelSaver <in> <out> [inference|checkpoint]
+    public static void main(String[] args){
+        if(args.length < 2){
+            System.out.println("usage: ModelSaver <in> <out> [inference|checkpoint]");
+            return;
+        }
+        boolean checkpoint = args.length > 2 && args[2].equals("checkpoint");
+        NeuralNetwork net = load(args[0], checkpoint);
+        if(net != null) save(net, args[1], checkpoint);
+    }
+
+    //models saved before the sources moved into the naminet package name their classes without it
+    private static class PackagedInputStream extends ObjectInputStream{
+        PackagedInputStream(InputStream in) throws IOException{
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException{
+            try{
+                return super.resolveClass(desc);
+            }catch(ClassNotFoundException e){
+                if(desc.getName().contains(".")) throw e;
+                return Class.forName(packaged(desc.getName()), false, ModelSaver.class.getClassLoader());
+            }
+        }
+
+        //a class is matched by its name without the package, an array type isn't, so array
+        //descriptors (they have no fields) are swapped for the local ones
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException{
+            ObjectStreamClass desc = super.readClassDescriptor();
+            String name = desc.getName();
+            if(name.startsWith("[L") && !name.contains(".")){
+                try{
+                    return ObjectStreamClass.lookup(Class.forName(packaged(name), false, ModelSaver.class.getClassLoader()));
+                }catch(ClassNotFoundException e){
+                    return desc;
+                }
+            }
+            return desc;
+        }
+
+        private static String packaged(String name){
+            String pkg = ModelSaver.class.getPackageName() + ".";
+            return name.startsWith("[") ? name.replaceFirst("^(\\[+)L", "$1L" + pkg) : pkg + name;
+        }
+    }
+}
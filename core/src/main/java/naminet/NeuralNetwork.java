@@ -0,0 +1,330 @@
+//holds the network     ~template~
+
+package naminet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+class NeuralNetwork implements Serializable{
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_SHARD_SIZE = 4;    //smaller shards cost more in overhead than they save
+    
+    private NeuronLayer[] layers;
+    private double[] dropoutRates;
+    private FloatNetwork single;     //float32 layers in single precision mode (layers is empty then), null otherwise
+
+    //workspace mode (see setWorkspaceMode), nothing here is saved with the model
+    private transient boolean workspace;
+    private transient double[] outputGrad;
+    private transient double[][] outputGrads;
+    private transient double[][] predictions;
+    private transient NeuronLayer.BatchCache[][] shardCaches;
+    private transient SplittableRandom rand;    //every random stream (init, dropout, noise) is split off this one
+    
+    //constructor
+    public NeuralNetwork(int[] layerSizes, double[] dropoutRates){
+        this(layerSizes, dropoutRates, Optimizer.Adam::new);
+    }
+
+    public NeuralNetwork(int[] layerSizes, double[] dropoutRates, Supplier<Optimizer> optimizers){     //one optimizer per layer
+        this(layerSizes, dropoutRates, optimizers, new SplittableRandom().nextLong());
+    }
+
+    //same seed (and thread count for the parallel trainBatch) gives the same weights and the same training run
+    public NeuralNetwork(int[] layerSizes, double[] dropoutRates, Supplier<Optimizer> optimizers, long seed){
+        this(layerSizes, dropoutRates, optimizers, seed, false);
+    }
+
+    //singlePrecision keeps weights, activations and optimizer state in float (half the memory traffic)
+    public NeuralNetwork(int[] layerSizes, double[] dropoutRates, Supplier<Optimizer> optimizers, long seed, boolean singlePrecision){
+        this(layerSizes, dropoutRates, Activation.LEAKY_RELU, optimizers, seed, singlePrecision);
+    }
+
+    //hidden is the activation of every layer but the output one, which is always softmax
+    //(the loss gradient the output layer gets, yp - yt, is the one of softmax + cross-entropy)
+    public NeuralNetwork(int[] layerSizes, double[] dropoutRates, Activation hidden, Supplier<Optimizer> optimizers, long seed, boolean singlePrecision){
+        if(hidden instanceof Activation.Softmax) throw new IllegalArgumentException("softmax is for the output layer only");
+        this.dropoutRates = dropoutRates;
+        this.rand = new SplittableRandom(seed);
+        if(singlePrecision){
+            layers = new NeuronLayer[0];
+            single = new FloatNetwork(layerSizes, dropoutRates, hidden, optimizers, rand);
+            return;
+        }
+        layers = new NeuronLayer[layerSizes.length - 1];
+        for(int i=0; i<layers.length; i++){
+            Activation activation = (i == layers.length - 1) ? Activation.SOFTMAX : hidden;
+            layers[i] = new NeuronLayer(layerSizes[i], layerSizes[i+1], activation, optimizers.get(), rand.split());
+        }
+    }
+
+    //a network read back from a model file (ModelFile), seeded on first use like a deserialized one
+    NeuralNetwork(NeuronLayer[] layers, double[] dropoutRates){
+        this.layers = layers;
+        this.dropoutRates = dropoutRates;
+    }
+
+    NeuralNetwork(FloatNetwork single, double[] dropoutRates){
+        this.layers = new NeuronLayer[0];
+        this.single = single;
+        this.dropoutRates = dropoutRates;
+    }
+
+    NeuronLayer[] layers(){     //empty in single precision mode
+        return layers;
+    }
+
+    FloatNetwork floatNetwork(){    //null unless single precision
+        return single;
+    }
+
+    double[] dropoutRates(){
+        return dropoutRates;
+    }
+
+    //reseeds dropout and optimizer noise, e.g. to replay the fine-tuning of a loaded model
+    public void setSeed(long seed){
+        rand = new SplittableRandom(seed);
+        if(single != null) single.setSeed(rand);
+        for(NeuronLayer layer : layers){
+            layer.setRandom(rand.split());
+        }
+        shardCaches = null;
+    }
+
+    //switch optimizers on a (loaded) network, e.g. SGD for fine-tuning;
+    //null drops all optimizer state when the network is only used for predicting
+    public void setOptimizer(Supplier<Optimizer> optimizers){
+        if(single != null) single.setOptimizer(optimizers);
+        for(NeuronLayer layer : layers){
+            layer.setOptimizer(optimizers == null ? null : optimizers.get());
+        }
+    }
+
+    //reuse activation and gradient buffers across calls instead of allocating them every sample;
+    //arrays returned by forward/train/trainBatch are then overwritten by the next call
+    public void setWorkspaceMode(boolean workspace){
+        this.workspace = workspace;
+        if(single != null) single.setWorkspaceMode(workspace);
+        for(NeuronLayer layer : layers){
+            layer.setWorkspaceMode(workspace);
+        }
+    }
+
+    public boolean isSinglePrecision(){
+        return single != null;
+    }
+
+    public double[] forward(double[] input){        //forwarding
+        if(single != null) return single.forward(input);
+        double[] a = input;
+        for(int i=0; i<layers.length; i++){
+            a = layers[i].forward(a, dropoutRates[i]);
+        }
+        return a;
+    }
+
+    public double[] train(double[] input, double[] target, double lr){      //backpropagation, returns the prediction it trained on
+        if(single != null) return single.trainBatch(new double[][]{input}, new double[][]{target}, lr, null)[0];     //a batch of one is the same step
+        double[] yp = forward(input);
+
+        //compute dA for output layer
+        if(!workspace || outputGrad == null || outputGrad.length != yp.length) outputGrad = new double[yp.length];
+        double[] dA = Functions.crossEntropyLossDerivatives(yp, target, outputGrad);
+
+        //backpropagate through layers in reverse
+        for(int i=layers.length-1; i>=0; i--){
+            dA = layers[i].backward(dA, lr);
+        }
+        return yp;
+    }
+
+    public double[][] trainBatch(double[][] inputs, double[][] targets, double lr){     //mini-batch backpropagation, one optimizer step per batch, returns the predictions
+        if(single != null) return single.trainBatch(inputs, targets, lr, null);
+        double[][] a = inputs;
+        for(int i=0; i<layers.length; i++){
+            a = layers[i].forwardBatch(a, dropoutRates[i]);
+        }
+
+        //compute dA for output layer, per sample
+        outputGrads = lossGradients(a, targets, outputGrads);
+        double[][] dA = outputGrads;
+
+        //backpropagate through layers in reverse
+        for(int i=layers.length-1; i>=0; i--){
+            dA = layers[i].backwardBatch(dA, lr);
+        }
+        return a;
+    }
+
+    //data-parallel trainBatch: the batch is split into shards that compute their gradients on the pool,
+    //then the gradients are summed and every layer takes a single optimizer step
+    //pool may be null, then it's the plain trainBatch on the calling thread
+    public double[][] trainBatch(double[][] inputs, double[][] targets, double lr, ForkJoinPool pool){
+        if(single != null) return single.trainBatch(inputs, targets, lr, pool);
+        int batchSize = inputs.length;
+        int shards = pool == null ? 1 : Math.min(pool.getParallelism(), (batchSize + MIN_SHARD_SIZE - 1) / MIN_SHARD_SIZE);
+        if(shards <= 1){
+            return trainBatch(inputs, targets, lr);
+        }
+
+        if(!workspace || predictions == null || predictions.length != batchSize) predictions = new double[batchSize][];
+        if(!workspace || shardCaches == null || shardCaches.length != shards) shardCaches = newCaches(shards);
+        double[][] predictions = this.predictions;
+        NeuronLayer.BatchCache[][] caches = shardCaches;
+        double scale = 1.0 / batchSize;     //each shard scales by the full batch, so the sum is the batch mean
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int s=0; s<shards; s++){
+            int from = s * batchSize / shards;
+            int to = (s + 1) * batchSize / shards;
+            NeuronLayer.BatchCache[] own = caches[s];
+            tasks.add(pool.submit(() -> {
+                double[][] yp = gradientsBatch(Arrays.copyOfRange(inputs, from, to),
+                                               Arrays.copyOfRange(targets, from, to), scale, own);
+                System.arraycopy(yp, 0, predictions, from, yp.length);
+            }));
+        }
+        for(ForkJoinTask<?> task : tasks) task.join();
+
+        //reduce the shard gradients into shard 0, split by index range so the reduction runs in parallel too
+        tasks.clear();
+        for(int l=0; l<layers.length; l++){
+            int layer = l;
+            double[] dW = caches[0][l].dW;
+            for(int s=0; s<shards; s++){
+                int from = s * dW.length / shards;
+                int to = (s + 1) * dW.length / shards;
+                tasks.add(pool.submit(() -> {
+                    for(int k=1; k<caches.length; k++){
+                        double[] part = caches[k][layer].dW;
+                        for(int j=from; j<to; j++){
+                            dW[j] += part[j];
+                        }
+                    }
+                }));
+            }
+            double[] dB = caches[0][l].dB;
+            for(int k=1; k<shards; k++){
+                double[] part = caches[k][l].dB;
+                for(int j=0; j<dB.length; j++){
+                    dB[j] += part[j];
+                }
+            }
+        }
+        for(ForkJoinTask<?> task : tasks) task.join();
+
+        for(int l=0; l<layers.length; l++){
+            layers[l].applyGradients(caches[0][l].dW, caches[0][l].dB, lr);
+        }
+        return predictions;
+    }
+
+    //forward + backward for one shard, leaving its (scaled) gradients in caches; no weights are touched
+    private double[][] gradientsBatch(double[][] inputs, double[][] targets, double scale, NeuronLayer.BatchCache[] caches){
+        double[][] a = inputs;
+        for(int i=0; i<layers.length; i++){
+            a = layers[i].forwardBatch(a, dropoutRates[i], caches[i]);
+        }
+
+        NeuronLayer.BatchCache out = caches[layers.length - 1];
+        out.dA = lossGradients(a, targets, out.dA);     //per shard, unlike outputGrads
+        double[][] dA = out.dA;
+
+        for(int i=layers.length-1; i>=0; i--){
+            dA = layers[i].gradientsBatch(dA, scale, caches[i]);
+        }
+        return a;
+    }
+
+    //dA of the loss for every sample, written into buf when it can be reused
+    private double[][] lossGradients(double[][] a, double[][] targets, double[][] buf){
+        if(!workspace || buf == null || buf.length != a.length) buf = new double[a.length][];
+        for(int n=0; n<a.length; n++){
+            if(buf[n] == null || buf[n].length != a[n].length) buf[n] = new double[a[n].length];
+            Functions.crossEntropyLossDerivatives(a[n], targets[n], buf[n]);
+        }
+        return buf;
+    }
+
+    private NeuronLayer.BatchCache[][] newCaches(int shards){
+        if(rand == null) rand = new SplittableRandom();     //loaded model that was never seeded
+        NeuronLayer.BatchCache[][] caches = new NeuronLayer.BatchCache[shards][layers.length];
+        for(int s=0; s<shards; s++){
+            for(int l=0; l<layers.length; l++){
+                caches[s][l] = new NeuronLayer.BatchCache();
+                caches[s][l].rand = rand.split();
+            }
+        }
+        return caches;
+    }
+
+    //predicting (after training): no dropout, and nothing is written to the layers, so it can run next to other predicts
+    public double[] predict(double[] input){
+        return inference().predict(input);
+    }
+
+    //batched predict for scoring many images, see InferenceModel.predictBatch
+    public Predictions predictBatch(double[][] inputs){
+        return inference().predictBatch(inputs);
+    }
+
+    //pool splits the batch across its threads, null keeps it on the calling thread
+    public Predictions predictBatch(double[][] inputs, ForkJoinPool pool){
+        return inference().predictBatch(inputs, pool);
+    }
+
+    //flat variant: count samples of inputSize() values back to back
+    public Predictions predictBatch(double[] inputs, int count, ForkJoinPool pool){
+        return inference().predictBatch(inputs, count, pool);
+    }
+
+    public int inputSize(){
+        return inference().inputSize();
+    }
+
+    public int outputSize(){
+        return inference().outputSize();
+    }
+
+    //an immutable copy of the current weights for serving from many threads (see InferenceModel),
+    //training this network afterwards doesn't change it
+    public InferenceModel toInferenceModel(){
+        if(single != null){
+            FloatNeuronLayer[] live = single.layers();
+            FloatNeuronLayer[] copies = new FloatNeuronLayer[live.length];
+            for(int i=0; i<live.length; i++){
+                copies[i] = new FloatNeuronLayer(live[i].inputSize(), live[i].outputSize(),
+                                                 live[i].weights().clone(), live[i].biases().clone(), live[i].activation(), null);
+            }
+            return new InferenceModel(null, copies);
+        }
+        NeuronLayer[] copies = new NeuronLayer[layers.length];
+        for(int i=0; i<layers.length; i++){
+            copies[i] = new NeuronLayer(layers[i].inputSize(), layers[i].outputSize(),
+                                        layers[i].weights().clone(), layers[i].biases().clone(), layers[i].activation(), null);
+        }
+        return new InferenceModel(copies, null);
+    }
+
+    //a view of the live layers, no copy
+    private InferenceModel inference(){
+        return single != null ? new InferenceModel(null, single.layers()) : new InferenceModel(layers, null);
+    }
+
+    //layers of models serialized before there was a choice of activation get the layout they were trained with
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        for(int i=0; i<layers.length; i++){
+            layers[i].defaultActivation(i == layers.length - 1);
+        }
+    }
+}
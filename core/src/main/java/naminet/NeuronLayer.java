@@ -0,0 +1,444 @@
+//a layer of neurons        ~template~
+
+package naminet;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+
+class NeuronLayer implements Serializable{
+    private static final long serialVersionUID = 1L;
+    private static final DenseKernels KERNELS = DenseKernels.INSTANCE;   //SIMD when available
+
+    //saved models keep the old [outputSize][inputSize] layout for w, and
+    //mW/vW/mB/vB/t are only read back from models saved before the optimizer field existed (Adam state)
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("inputSize", int.class),
+        new ObjectStreamField("outputSize", int.class),
+        new ObjectStreamField("w", double[][].class),
+        new ObjectStreamField("b", double[].class),
+        new ObjectStreamField("mW", double[][].class),
+        new ObjectStreamField("vW", double[][].class),
+        new ObjectStreamField("mB", double[].class),
+        new ObjectStreamField("vB", double[].class),
+        new ObjectStreamField("t", int.class),
+        new ObjectStreamField("optimizer", Optimizer.class),
+        new ObjectStreamField("activation", Activation.class)
+    };
+
+    private int inputSize;  //size of input (previous layer's output)
+    private int outputSize; //size of output (next layer's input)
+    private double[] w;     //weight, flat row-major (row i = neuron i, see idx)
+    private double[] b;     //bias
+    private Activation activation;
+    private double[] lastInput;
+    private double[] lastZ;     //previous z
+    private double[] lastA;     //previous a
+    private boolean[] dropoutMask;
+    private BatchCache batchCache;  //same as above, for the last forwardBatch
+    private Optimizer optimizer;    //null for inference only
+
+    //workspace mode: buffers below are allocated once and reused by every call,
+    //so arrays handed out by forward/backward are only valid until the next call
+    private boolean workspace;
+    private double[] dZ;
+    private double[] dAprev;
+    private boolean[] maskBuffer;
+    private SplittableRandom rand;  //dropout masks, the optimizer gets a stream split off it
+
+    //constructor
+    public NeuronLayer(int inputSize, int outputSize, boolean isOutputLayer){
+        this(inputSize, outputSize, isOutputLayer, new Optimizer.Adam(), new SplittableRandom());
+    }
+
+    //softmax on the output layer, leaky ReLU otherwise
+    public NeuronLayer(int inputSize, int outputSize, boolean isOutputLayer, Optimizer optimizer, SplittableRandom rand){
+        this(inputSize, outputSize, Activation.standard(isOutputLayer), optimizer, rand);
+    }
+
+    //rand seeds the weights and is then kept for the dropout masks and the optimizer
+    public NeuronLayer(int inputSize, int outputSize, Activation activation, Optimizer optimizer, SplittableRandom rand){
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.w = new double[outputSize * inputSize];
+        this.b = new double[outputSize];
+        this.activation = activation;
+        initializeParameters(rand);
+        setRandom(rand);
+        setOptimizer(optimizer);
+    }
+
+    //a layer read back from a model file (ModelFile), optimizer state and all
+    NeuronLayer(int inputSize, int outputSize, double[] w, double[] b, Activation activation, Optimizer optimizer){
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.w = w;
+        this.b = b;
+        this.activation = activation;
+        this.optimizer = optimizer;
+    }
+
+    int inputSize(){
+        return inputSize;
+    }
+
+    int outputSize(){
+        return outputSize;
+    }
+
+    double[] weights(){     //flat row-major, the live array
+        return w;
+    }
+
+    double[] biases(){
+        return b;
+    }
+
+    Optimizer optimizer(){
+        return optimizer;
+    }
+
+    Activation activation(){
+        return activation;
+    }
+
+    //models serialized before layers had an activation come back without one
+    void defaultActivation(boolean isOutputLayer){
+        if(activation == null) activation = Activation.standard(isOutputLayer);
+    }
+
+    //position of w[i][j] in the flat arrays
+    private int idx(int i, int j){
+        return i * inputSize + j;
+    }
+
+    public void initializeParameters(){
+        initializeParameters(new SplittableRandom());
+    }
+
+    public void initializeParameters(SplittableRandom rand){
+        if(optimizer != null) optimizer.init(w.length, b.length);  //fresh optimizer state
+
+        double std = activation.initScale(inputSize);   //He for the ReLUs, Xavier for the others
+        for(int i=0; i<outputSize; i++){        //initialize w and b
+            for(int j=0; j<inputSize; j++){
+                w[idx(i, j)] = rand.nextGaussian() * std;
+            }
+            b[i] = 0.0;
+        }
+    }
+
+    //swaps the optimizer (fresh state), null drops it for inference-only use
+    public void setOptimizer(Optimizer optimizer){
+        this.optimizer = optimizer;
+        if(optimizer != null){
+            optimizer.init(w.length, b.length);
+            if(rand != null) optimizer.setRandom(rand.split());
+        }
+    }
+
+    //reseeds the dropout masks (the per-sample path and this layer's own batch cache) and the optimizer
+    public void setRandom(SplittableRandom rand){
+        this.rand = rand;
+        if(batchCache != null) batchCache.rand = rand;
+        if(optimizer != null) optimizer.setRandom(rand.split());
+    }
+
+    public void setWorkspaceMode(boolean workspace){
+        this.workspace = workspace;
+    }
+
+    //buf itself (zeroed) in workspace mode when it fits, a fresh array otherwise
+    private double[] scratch(double[] buf, int size){
+        if(workspace && buf != null && buf.length == size){
+            Arrays.fill(buf, 0.0);
+            return buf;
+        }
+        return new double[size];
+    }
+
+    private double[][] scratch(double[][] buf, int rows, int cols){
+        if(workspace && buf != null && buf.length == rows){
+            for(int n=0; n<rows; n++){
+                buf[n] = scratch(buf[n], cols);
+            }
+            return buf;
+        }
+        return new double[rows][cols];
+    }
+
+    private boolean[][] scratch(boolean[][] buf, int rows, int cols){
+        if(workspace && buf != null && buf.length == rows && buf[0].length == cols){
+            return buf;     //every entry gets overwritten
+        }
+        return new boolean[rows][cols];
+    }
+
+    public double[] forward(double[] input, double dropoutRate){    //forward pass
+        double[] z = scratch(lastZ, outputSize);
+        for(int i=0; i<outputSize; i++){
+            z[i] = b[i] + KERNELS.dot(w, idx(i, 0), input, 0, inputSize);
+        }
+
+        this.lastInput = input;
+        this.lastZ = z;
+        this.lastA = scratch(lastA, outputSize);
+
+        activation.apply(z, lastA, 0, 1, outputSize);
+
+        //neuron dropouts
+        if(dropoutRate > 0){
+            if(rand == null) rand = new SplittableRandom();
+            if(maskBuffer == null || !workspace) maskBuffer = new boolean[outputSize];
+            dropoutMask = maskBuffer;
+            for(int i=0; i<outputSize; i++){
+                if(rand.nextDouble() < dropoutRate){
+                    //drop the neuron
+                    lastA[i] = 0.0;
+                    dropoutMask[i] = false;
+                }else{
+                    //keep and scale to keep average consistent
+                    lastA[i] /= (1.0 - dropoutRate);
+                    dropoutMask[i] = true;
+                }
+            }
+        }else{
+            dropoutMask = null;
+        }
+        return lastA;
+    }
+
+    public double[] backward(double[] dA, double lr){    //backpropagate
+        dZ = scratch(dZ, outputSize);
+        activation.backward(lastZ, dA, dZ, outputSize);
+
+        //drops the gradient to 0
+        if (dropoutMask != null) {
+            for (int i = 0; i < dZ.length; i++) {
+                if (!dropoutMask[i]) {
+                    dZ[i] = 0.0;
+                }
+            }
+        }
+
+        //one fused sweep: weight gradients, Adam update and the gradient for the previous layer
+        dAprev = scratch(dAprev, inputSize);
+        stepOuter(dZ, lastInput, dAprev, lr);
+
+        return dAprev;
+    }
+
+    //inference for count samples at once, rows back to back in flat arrays: out = activation(in * W^T + b),
+    //a single matrix-matrix product instead of one dot product per neuron per sample
+    void predictBatch(double[] in, int inFrom, int count, double[] out){
+        KERNELS.matmulT(in, inFrom, count, w, 0, outputSize, inputSize, out, 0);
+        for(int n=0; n<count; n++){
+            int row = n * outputSize;
+            for(int i=0; i<outputSize; i++){
+                out[row + i] += b[i];
+            }
+        }
+        activation.apply(out, out, 0, count, outputSize);
+    }
+
+    //what a batch forward pass saw and the gradients its backward pass produced,
+    //kept outside the layer so several workers can run the same layer at once
+    //(in workspace mode the arrays are reused from one batch to the next)
+    static class BatchCache{
+        double[][] inputs;
+        double[][] z;
+        double[][] a;
+        boolean[][] dropoutMasks;   //null when no dropout was applied
+        boolean[][] maskBuffer;
+        double[][] dA;      //loss gradient, only on the output layer's cache
+        double[][] dZ;
+        double[][] dAprev;
+        double[] dW;
+        double[] dB;
+        SplittableRandom rand;  //dropout masks, one stream per cache
+    }
+
+    public double[][] forwardBatch(double[][] inputs, double dropoutRate){    //forward pass for a whole batch
+        if(batchCache == null){
+            if(rand == null) rand = new SplittableRandom();
+            batchCache = new BatchCache();
+            batchCache.rand = rand;
+        }
+        return forwardBatch(inputs, dropoutRate, batchCache);
+    }
+
+    public double[][] backwardBatch(double[][] dA, double lr){    //backpropagate a whole batch, one optimizer step
+        double[][] dAprev = gradientsBatch(dA, 1.0 / dA.length, batchCache);     //average the gradients over the batch
+        step(batchCache.dW, batchCache.dB, lr);
+        return dAprev;
+    }
+
+    //one optimizer step with gradients summed up elsewhere (e.g. across parallel shards)
+    void applyGradients(double[] dW, double[] dB, double lr){
+        step(dW, dB, lr);
+    }
+
+    double[][] forwardBatch(double[][] inputs, double dropoutRate, BatchCache cache){
+        int batchSize = inputs.length;
+        double[][] z = scratch(cache.z, batchSize, outputSize);
+
+        //Z = X * W^T + b, one weight row at a time so it stays hot across the batch
+        for(int i=0; i<outputSize; i++){
+            int row = idx(i, 0);
+            double bi = b[i];
+            for(int n=0; n<batchSize; n++){
+                z[n][i] = bi + KERNELS.dot(w, row, inputs[n], 0, inputSize);
+            }
+        }
+
+        double[][] a = scratch(cache.a, batchSize, outputSize);
+        for(int n=0; n<batchSize; n++){
+            activation.apply(z[n], a[n], 0, 1, outputSize);
+        }
+
+        //neuron dropouts (own mask per sample)
+        boolean[][] masks = null;
+        if(dropoutRate > 0){
+            if(cache.rand == null) cache.rand = new SplittableRandom();
+            masks = scratch(cache.maskBuffer, batchSize, outputSize);
+            cache.maskBuffer = masks;
+            for(int n=0; n<batchSize; n++){
+                for(int i=0; i<outputSize; i++){
+                    if(cache.rand.nextDouble() < dropoutRate){
+                        a[n][i] = 0.0;
+                        masks[n][i] = false;
+                    }else{
+                        a[n][i] /= (1.0 - dropoutRate);
+                        masks[n][i] = true;
+                    }
+                }
+            }
+        }
+
+        cache.inputs = inputs;
+        cache.z = z;
+        cache.a = a;
+        cache.dropoutMasks = masks;
+        return a;
+    }
+
+    //fills cache.dW/dB with scale * the batch gradient (no optimizer step), returns dA for the previous layer
+    double[][] gradientsBatch(double[][] dA, double scale, BatchCache cache){
+        int batchSize = dA.length;
+        double[][] dZ = scratch(cache.dZ, batchSize, outputSize);
+        for(int n=0; n<batchSize; n++){
+            activation.backward(cache.z[n], dA[n], dZ[n], outputSize);
+            if(cache.dropoutMasks != null){
+                for(int i=0; i<outputSize; i++){
+                    if(!cache.dropoutMasks[n][i]) dZ[n][i] = 0.0;
+                }
+            }
+        }
+
+        //gradient for previous layer (with the weights the forward pass used)
+        double[][] dAprev = scratch(cache.dAprev, batchSize, inputSize);
+        for(int n=0; n<batchSize; n++){
+            double[] dAn = dAprev[n];
+            for(int i=0; i<outputSize; i++){
+                double dz = dZ[n][i];
+                if(dz == 0.0) continue;
+                KERNELS.axpy(dz, w, idx(i, 0), dAn, 0, inputSize);
+            }
+        }
+
+        //dW = scale * dZ^T * X, dB = scale * column sums of dZ
+        double[] dW = scratch(cache.dW, outputSize * inputSize);
+        double[] dB = scratch(cache.dB, outputSize);
+        for(int i=0; i<outputSize; i++){
+            int row = idx(i, 0);
+            for(int n=0; n<batchSize; n++){
+                double dz = dZ[n][i] * scale;
+                if(dz == 0.0) continue;
+                dB[i] += dz;
+                KERNELS.axpy(dz, cache.inputs[n], 0, dW, row, inputSize);
+            }
+        }
+
+        cache.dZ = dZ;
+        cache.dAprev = dAprev;
+        cache.dW = dW;
+        cache.dB = dB;
+        return dAprev;
+    }
+
+    //one optimizer step with the given gradients (averaged over a batch)
+    private void step(double[] dW, double[] dB, double lr){
+        Optimizer opt = requireOptimizer();
+        opt.beginStep();
+        opt.updateWeights(w, 0, dW, 0, w.length, lr);
+        opt.updateBiases(b, dB, lr);
+    }
+
+    //one optimizer step for a single sample without building dW: the optimizer forms the gradient dZ[i] * input[j]
+    //and accumulates dAprev (from the weights before the update) in the same sweep over each neuron's row
+    private void stepOuter(double[] dZ, double[] input, double[] dAprev, double lr){
+        Optimizer opt = requireOptimizer();
+        opt.beginStep();
+        for(int i=0; i<outputSize; i++){
+            opt.updateOuter(w, idx(i, 0), dZ[i], input, dAprev, inputSize, lr);
+        }
+        opt.updateBiases(b, dZ, lr);
+    }
+
+    private Optimizer requireOptimizer(){
+        if(optimizer == null){
+            throw new IllegalStateException("layer has no optimizer (inference only), call setOptimizer first");
+        }
+        return optimizer;
+    }
+
+    //flat row-major -> [outputSize][inputSize]
+    private double[][] toRows(double[] flat){
+        double[][] rows = new double[outputSize][];
+        for(int i=0; i<outputSize; i++){
+            rows[i] = Arrays.copyOfRange(flat, idx(i, 0), idx(i + 1, 0));
+        }
+        return rows;
+    }
+
+    //[outputSize][inputSize] -> flat row-major
+    private double[] fromRows(double[][] rows){
+        double[] flat = new double[outputSize * inputSize];
+        for(int i=0; i<outputSize; i++){
+            System.arraycopy(rows[i], 0, flat, idx(i, 0), inputSize);
+        }
+        return flat;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("inputSize", inputSize);
+        fields.put("outputSize", outputSize);
+        fields.put("w", toRows(w));
+        fields.put("b", b);
+        fields.put("optimizer", optimizer);
+        fields.put("activation", activation);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        ObjectInputStream.GetField fields = in.readFields();
+        inputSize = fields.get("inputSize", 0);
+        outputSize = fields.get("outputSize", 0);
+        w = fromRows((double[][]) fields.get("w", null));
+        b = (double[]) fields.get("b", null);
+        optimizer = (Optimizer) fields.get("optimizer", null);
+        activation = (Activation) fields.get("activation", null);    //null before there was one, see defaultActivation
+
+        double[][] mW = (double[][]) fields.get("mW", null);
+        if(optimizer == null && mW != null){    //older model, Adam state stored on the layer itself
+            optimizer = Optimizer.Adam.restore(fromRows(mW), fromRows((double[][]) fields.get("vW", null)),
+                                               (double[]) fields.get("mB", null), (double[]) fields.get("vB", null),
+                                               fields.get("t", 0));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,423 @@
+//optimizers for the layers      ~template~
+//one instance per layer, and each one only allocates the state it needs (SGD none, momentum one buffer, Adam two)
+
+package naminet;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+interface Optimizer extends Serializable{
+    void init(int weightCount, int biasCount);     //allocate state for a layer of this size
+    void beginStep();                               //once per optimizer step, before any update
+    void updateWeights(double[] w, int from, double[] grad, int gradFrom, int count, double lr);    //w[from..from+count) with grad[gradFrom..]
+    void updateBiases(double[] b, double[] grad, double lr);
+    default void setRandom(RandomGenerator rand){}  //for optimizers that draw random numbers
+
+    //single-sample step of the weight row w[row..row+count) without a gradient buffer: the gradient of w[row+j] is
+    //dz * input[j], and dAprev[j] gets dz * w[row+j] with the weight from before its update
+    //the default builds the gradient row and hands it to updateWeights, the optimizers here do it all in one sweep
+    default void updateOuter(double[] w, int row, double dz, double[] input, double[] dAprev, int count, double lr){
+        double[] grad = new double[count];
+        for(int j=0; j<count; j++){
+            dAprev[j] += dz * w[row + j];
+            grad[j] = dz * input[j];
+        }
+        updateWeights(w, row, grad, 0, count, lr);
+    }
+
+    //the same optimizer with these settings and fresh float state, for a float32 layer (FloatNeuronLayer)
+    FloatOptimizer toFloat();
+
+    //checkpoint files (ModelFile): the constructor arguments in order, and the state arrays
+    double[] hyperparameters();
+    void writeState(ModelFile.Writer out) throws IOException;
+    void readState(ModelFile.Reader in);
+
+    static void write(Optimizer optimizer, ModelFile.Writer out) throws IOException{
+        out.putString(optimizer.getClass().getSimpleName());
+        out.putDoubles(optimizer.hyperparameters());
+        optimizer.writeState(out);
+    }
+
+    static Optimizer read(ModelFile.Reader in){
+        String name = in.getString();
+        Optimizer optimizer = create(name, in.getDoubles());
+        optimizer.readState(in);
+        return optimizer;
+    }
+
+    //name and hyperparameters as Optimizer.write put them, no state allocated yet
+    static Optimizer create(String name, double[] h){
+        return switch(name){
+            case "SGD" -> new SGD(h[0], h[1]);
+            case "Momentum" -> new Momentum(h[0], h[1], h[2]);
+            case "RMSProp" -> new RMSProp(h[0], h[1], h[2], h[3]);
+            case "Adam" -> new Adam(h[0], h[1], h[2], h[3], h[4]);
+            case "AdamW" -> new AdamW(h[0], h[1], h[2], h[3], h[4]);
+            default -> throw new IllegalArgumentException("unknown optimizer in model file: " + name);
+        };
+    }
+
+    static double clip(double grad, double clipValue){
+        return Math.max(-clipValue, Math.min(clipValue, grad));
+    }
+
+    //plain gradient descent, no state at all
+    class SGD implements Optimizer{
+        private static final long serialVersionUID = 1L;
+        private final double weightDecay;
+        private final double clipValue;
+
+        public SGD(){
+            this(0.0, 5.0);
+        }
+        public SGD(double weightDecay, double clipValue){
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){}
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{weightDecay, clipValue};
+        }
+        public FloatOptimizer toFloat(){
+            return new FloatOptimizer.SGD(weightDecay, clipValue);
+        }
+        public void writeState(ModelFile.Writer out){}
+        public void readState(ModelFile.Reader in){}
+
+        public void updateWeights(double[] w, int from, double[] grad, int gradFrom, int count, double lr){
+            for(int k=0; k<count; k++){
+                updateWeight(w, from + k, grad[gradFrom + k], lr);
+            }
+        }
+
+        @Override
+        public void updateOuter(double[] w, int row, double dz, double[] input, double[] dAprev, int count, double lr){
+            for(int j=0; j<count; j++){
+                dAprev[j] += dz * w[row + j];
+                updateWeight(w, row + j, dz * input[j], lr);
+            }
+        }
+
+        private void updateWeight(double[] w, int p, double grad, double lr){
+            double g = clip(grad + weightDecay * w[p], clipValue);
+            w[p] -= lr * g;
+        }
+
+        public void updateBiases(double[] b, double[] grad, double lr){
+            for(int i=0; i<b.length; i++){
+                b[i] -= lr * grad[i];
+            }
+        }
+    }
+
+    //SGD with momentum, one velocity buffer
+    class Momentum implements Optimizer{
+        private static final long serialVersionUID = 1L;
+        private final double momentum;
+        private final double weightDecay;
+        private final double clipValue;
+        private double[] vW;
+        private double[] vB;
+
+        public Momentum(){
+            this(0.9, 0.0, 5.0);
+        }
+        public Momentum(double momentum, double weightDecay, double clipValue){
+            this.momentum = momentum;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){
+            vW = new double[weightCount];
+            vB = new double[biasCount];
+        }
+
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{momentum, weightDecay, clipValue};
+        }
+
+        public FloatOptimizer toFloat(){
+            return new FloatOptimizer.Momentum(momentum, weightDecay, clipValue);
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putDoubles(vW);
+            out.putDoubles(vB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            vW = in.getDoubles();
+            vB = in.getDoubles();
+        }
+
+        public void updateWeights(double[] w, int from, double[] grad, int gradFrom, int count, double lr){
+            for(int k=0; k<count; k++){
+                updateWeight(w, from + k, grad[gradFrom + k], lr);
+            }
+        }
+
+        @Override
+        public void updateOuter(double[] w, int row, double dz, double[] input, double[] dAprev, int count, double lr){
+            for(int j=0; j<count; j++){
+                dAprev[j] += dz * w[row + j];
+                updateWeight(w, row + j, dz * input[j], lr);
+            }
+        }
+
+        private void updateWeight(double[] w, int p, double grad, double lr){
+            double g = clip(grad + weightDecay * w[p], clipValue);
+            vW[p] = momentum * vW[p] + g;
+            w[p] -= lr * vW[p];
+        }
+
+        public void updateBiases(double[] b, double[] grad, double lr){
+            for(int i=0; i<b.length; i++){
+                vB[i] = momentum * vB[i] + grad[i];
+                b[i] -= lr * vB[i];
+            }
+        }
+    }
+
+    //RMSProp, one buffer of squared gradient averages
+    class RMSProp implements Optimizer{
+        private static final long serialVersionUID = 1L;
+        private final double rho;
+        private final double epsilon;
+        private final double weightDecay;
+        private final double clipValue;
+        private double[] sW;
+        private double[] sB;
+
+        public RMSProp(){
+            this(0.9, 1e-8, 0.0, 5.0);
+        }
+        public RMSProp(double rho, double epsilon, double weightDecay, double clipValue){
+            this.rho = rho;
+            this.epsilon = epsilon;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        public void init(int weightCount, int biasCount){
+            sW = new double[weightCount];
+            sB = new double[biasCount];
+        }
+
+        public void beginStep(){}
+
+        public double[] hyperparameters(){
+            return new double[]{rho, epsilon, weightDecay, clipValue};
+        }
+
+        public FloatOptimizer toFloat(){
+            return new FloatOptimizer.RMSProp(rho, epsilon, weightDecay, clipValue);
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putDoubles(sW);
+            out.putDoubles(sB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            sW = in.getDoubles();
+            sB = in.getDoubles();
+        }
+
+        public void updateWeights(double[] w, int from, double[] grad, int gradFrom, int count, double lr){
+            for(int k=0; k<count; k++){
+                updateWeight(w, from + k, grad[gradFrom + k], lr);
+            }
+        }
+
+        @Override
+        public void updateOuter(double[] w, int row, double dz, double[] input, double[] dAprev, int count, double lr){
+            for(int j=0; j<count; j++){
+                dAprev[j] += dz * w[row + j];
+                updateWeight(w, row + j, dz * input[j], lr);
+            }
+        }
+
+        private void updateWeight(double[] w, int p, double grad, double lr){
+            double g = clip(grad + weightDecay * w[p], clipValue);
+            sW[p] = rho * sW[p] + (1 - rho) * g * g;
+            w[p] -= lr * g / (Math.sqrt(sW[p]) + epsilon);
+        }
+
+        public void updateBiases(double[] b, double[] grad, double lr){
+            for(int i=0; i<b.length; i++){
+                sB[i] = rho * sB[i] + (1 - rho) * grad[i] * grad[i];
+                b[i] -= lr * grad[i] / (Math.sqrt(sB[i]) + epsilon);
+            }
+        }
+    }
+
+    //Adam (what NamiNet has always trained with), two moment buffers
+    class Adam implements Optimizer{
+        private static final long serialVersionUID = 1L;
+        protected final double beta1;
+        protected final double beta2;
+        protected final double epsilon;
+        protected final double weightDecay;
+        protected final double clipValue;
+        protected double[] mW;
+        protected double[] vW;
+        protected double[] mB;
+        protected double[] vB;
+        protected int t;
+        protected transient double correction1;     //1 - beta^t for the current step
+        protected transient double correction2;
+        private transient RandomGenerator rand;     //plateau noise, not saved with the model
+
+        public Adam(){
+            this(0.99, 0.999, 1e-8, 0.00005, 5.0);
+        }
+        public Adam(double beta1, double beta2, double epsilon, double weightDecay, double clipValue){
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+            this.weightDecay = weightDecay;
+            this.clipValue = clipValue;
+        }
+
+        //picks up the moments of a model saved before optimizers were pluggable
+        static Adam restore(double[] mW, double[] vW, double[] mB, double[] vB, int t){
+            Adam adam = new Adam();
+            adam.mW = mW;
+            adam.vW = vW;
+            adam.mB = mB;
+            adam.vB = vB;
+            adam.t = t;
+            return adam;
+        }
+
+        public void init(int weightCount, int biasCount){
+            mW = new double[weightCount];
+            vW = new double[weightCount];
+            mB = new double[biasCount];
+            vB = new double[biasCount];
+            t = 0;
+        }
+
+        @Override
+        public void setRandom(RandomGenerator rand){
+            this.rand = rand;
+        }
+
+        public double[] hyperparameters(){
+            return new double[]{beta1, beta2, epsilon, weightDecay, clipValue};
+        }
+
+        public FloatOptimizer toFloat(){
+            return new FloatOptimizer.Adam(beta1, beta2, epsilon, weightDecay, clipValue);
+        }
+
+        public void writeState(ModelFile.Writer out) throws IOException{
+            out.putInt(t);
+            out.putDoubles(mW);
+            out.putDoubles(vW);
+            out.putDoubles(mB);
+            out.putDoubles(vB);
+        }
+
+        public void readState(ModelFile.Reader in){
+            t = in.getInt();
+            mW = in.getDoubles();
+            vW = in.getDoubles();
+            mB = in.getDoubles();
+            vB = in.getDoubles();
+        }
+
+        public void beginStep(){
+            if(rand == null) rand = new SplittableRandom();    //nobody seeded us
+            t++;                    //time increment
+            correction1 = 1 - Math.pow(beta1, t);   //bias correction, same for every weight in this step
+            correction2 = 1 - Math.pow(beta2, t);
+        }
+
+        public void updateWeights(double[] w, int from, double[] grad, int gradFrom, int count, double lr){
+            for(int k=0; k<count; k++){
+                updateWeight(w, from + k, grad[gradFrom + k], lr);
+            }
+        }
+
+        //the fused sweep NeuronLayer's per-sample backward relies on (weight gradients, Adam step and dAprev at once)
+        @Override
+        public void updateOuter(double[] w, int row, double dz, double[] input, double[] dAprev, int count, double lr){
+            for(int j=0; j<count; j++){
+                dAprev[j] += dz * w[row + j];
+                updateWeight(w, row + j, dz * input[j], lr);
+            }
+        }
+
+        protected void updateWeight(double[] w, int p, double grad, double lr){
+            //compute m and v
+            double g = clip(grad + (weightDecay * w[p]), clipValue);
+            double noise = (rand.nextDouble() - 0.5) * 2e-6;    //noise for plateauing problem
+
+            mW[p] = beta1 * mW[p] + (1 - beta1) * g;       //m and v moments
+            vW[p] = beta2 * vW[p] + (1 - beta2) * g * g;
+
+            //bias correction
+            double mHat = mW[p] / correction1;
+            double vHat = vW[p] / correction2;
+
+            //update weight
+            w[p] -= lr * mHat / (Math.sqrt(vHat) + epsilon) + noise;
+        }
+
+        public void updateBiases(double[] b, double[] grad, double lr){
+            for(int i=0; i<b.length; i++){
+                //compute m and v
+                mB[i] = beta1 * mB[i] + (1 - beta1) * grad[i];
+                vB[i] = beta2 * vB[i] + (1 - beta2) * grad[i] * grad[i];
+
+                //bias correction
+                double mHat = mB[i] / correction1;
+                double vHat = vB[i] / correction2;
+
+                //update bias
+                b[i] -= lr * mHat / (Math.sqrt(vHat) + epsilon);
+            }
+        }
+    }
+
+    //AdamW, Adam with the weight decay applied to the weights directly instead of through the gradient
+    class AdamW extends Adam{
+        private static final long serialVersionUID = 1L;
+
+        public AdamW(){
+            this(0.9, 0.999, 1e-8, 0.01, 5.0);
+        }
+        public AdamW(double beta1, double beta2, double epsilon, double weightDecay, double clipValue){
+            super(beta1, beta2, epsilon, weightDecay, clipValue);
+        }
+
+        @Override
+        public FloatOptimizer toFloat(){
+            return new FloatOptimizer.AdamW(beta1, beta2, epsilon, weightDecay, clipValue);
+        }
+
+        //updateWeights and updateOuter come from Adam, only the per-weight step differs
+        @Override
+        protected void updateWeight(double[] w, int p, double grad, double lr){
+            double g = clip(grad, clipValue);
+
+            mW[p] = beta1 * mW[p] + (1 - beta1) * g;
+            vW[p] = beta2 * vW[p] + (1 - beta2) * g * g;
+
+            double mHat = mW[p] / correction1;
+            double vHat = vW[p] / correction2;
+
+            w[p] -= lr * (mHat / (Math.sqrt(vHat) + epsilon) + weightDecay * w[p]);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+//what NeuralNetwork.predictBatch returns: the class probabilities of every sample, flat row-major [size][classes],
+//and the most likely class of each one
+
+package naminet;
+
+import java.util.Arrays;
+
+class Predictions{
+    private final int classes;
+    private final double[] probabilities;
+    private final int[] labels;
+
+    Predictions(int size, int classes){
+        this.classes = classes;
+        this.probabilities = new double[size * classes];
+        this.labels = new int[size];
+    }
+
+    public int size(){
+        return labels.length;
+    }
+
+    public int classes(){
+        return classes;
+    }
+
+    public int label(int n){        //predicted digit of sample n
+        return labels[n];
+    }
+
+    public double probability(int n, int c){
+        return probabilities[n * classes + c];
+    }
+
+    public double[] probabilities(int n){       //copy of sample n's row, like predict would return
+        return Arrays.copyOfRange(probabilities, n * classes, (n + 1) * classes);
+    }
+
+    public int[] labels(){      //the live arrays, no copies
+        return labels;
+    }
+
+    public double[] probabilities(){
+        return probabilities;
+    }
+
+    //argmax of the rows [from, to), once their probabilities are in
+    void label(int from, int to){
+        for(int n=from; n<to; n++){
+            int row = n * classes;
+            int best = 0;
+            for(int c=1; c<classes; c++){
+                if(probabilities[row + c] > probabilities[row + best]) best = c;
+            }
+            labels[n] = best;
+        }
+    }
+}
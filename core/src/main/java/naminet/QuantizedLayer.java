@@ -0,0 +1,143 @@
+//a dense layer with int8 weights, for inference only (post-training quantization of a NeuronLayer)
+//every weight row (neuron) gets its own scale, w[i][j] ~ wq[i][j] * rowScale[i], and the layer's input one scale
+//calibrated on sample data, x[j] ~ xq[j] * inputScale, so that
+//  z[i] = inputScale * rowScale[i] * sum_j(xq[j] * wq[i][j]) + b[i]
+//with the sum done exactly in int32 (DenseKernels' int8 matmulT); biases stay double, they're only outputSize values
+
+package naminet;
+
+final class QuantizedLayer{
+    static final int LEVELS = 127;  //symmetric int8, -127..127 (-128 left out so both signs have the same range)
+    private static final DenseKernels KERNELS = DenseKernels.INSTANCE;
+
+    private final int inputSize;
+    private final int outputSize;
+    private final byte[] w;             //flat row-major like NeuronLayer
+    private final double[] rowScales;
+    private final double inputScale;
+    private final double[] b;
+    private final Activation activation;
+    private final double[] outputScales;    //inputScale * rowScales[i], what an int32 sum is multiplied by
+
+    QuantizedLayer(int inputSize, int outputSize, byte[] w, double[] rowScales, double inputScale, double[] b, Activation activation){
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.w = w;
+        this.rowScales = rowScales;
+        this.inputScale = inputScale;
+        this.b = b;
+        this.activation = activation;
+        this.outputScales = new double[outputSize];
+        for(int i=0; i<outputSize; i++){
+            outputScales[i] = inputScale * rowScales[i];
+        }
+    }
+
+    //inputRange is the largest |input| the layer represents, anything past it is clipped
+    static QuantizedLayer quantize(NeuronLayer layer, double inputRange){
+        int in = layer.inputSize();
+        int out = layer.outputSize();
+        double[] weights = layer.weights();
+        byte[] w = new byte[weights.length];
+        double[] rowScales = new double[out];
+        for(int i=0; i<out; i++){
+            double max = 0.0;
+            for(int j=0; j<in; j++){
+                max = Math.max(max, Math.abs(weights[i * in + j]));
+            }
+            rowScales[i] = max > 0.0 ? max / LEVELS : 1.0;     //an all-zero row stays zero with any scale
+            for(int j=0; j<in; j++){
+                w[i * in + j] = quantize(weights[i * in + j] / rowScales[i]);
+            }
+        }
+        double inputScale = inputRange > 0.0 ? inputRange / LEVELS : 1.0;
+        return new QuantizedLayer(in, out, w, rowScales, inputScale, layer.biases().clone(), layer.activation());
+    }
+
+    //the whole network, each layer's input range calibrated as the largest |value| it sees while the samples
+    //go through the original layers
+    static QuantizedLayer[] quantize(NeuronLayer[] layers, double[][] samples){
+        double[] ranges = new double[layers.length];
+        int widest = layers[0].inputSize();
+        for(NeuronLayer layer : layers){
+            widest = Math.max(widest, layer.outputSize());
+        }
+        int tile = InferenceModel.TILE;
+        double[] ping = new double[tile * widest];
+        double[] pong = new double[tile * widest];
+        for(int start=0; start<samples.length; start+=tile){
+            int count = Math.min(tile, samples.length - start);
+            for(int n=0; n<count; n++){
+                System.arraycopy(samples[start + n], 0, ping, n * layers[0].inputSize(), layers[0].inputSize());
+            }
+            double[] a = ping;
+            for(int l=0; l<layers.length; l++){
+                for(int k=0; k<count*layers[l].inputSize(); k++){
+                    ranges[l] = Math.max(ranges[l], Math.abs(a[k]));
+                }
+                double[] next = (a == ping) ? pong : ping;
+                layers[l].predictBatch(a, 0, count, next);
+                a = next;
+            }
+        }
+
+        QuantizedLayer[] quantized = new QuantizedLayer[layers.length];
+        for(int l=0; l<layers.length; l++){
+            quantized[l] = quantize(layers[l], ranges[l]);
+        }
+        return quantized;
+    }
+
+    int inputSize(){
+        return inputSize;
+    }
+
+    int outputSize(){
+        return outputSize;
+    }
+
+    byte[] weights(){
+        return w;
+    }
+
+    double[] rowScales(){
+        return rowScales;
+    }
+
+    double inputScale(){
+        return inputScale;
+    }
+
+    double[] biases(){
+        return b;
+    }
+
+    Activation activation(){
+        return activation;
+    }
+
+    //NeuronLayer.predictBatch on int8: count rows of inputSize values from in[inFrom..] are quantized into q,
+    //multiplied into acc, and come out scaled back to doubles in out (rows of outputSize values)
+    //q and acc are the caller's scratch (count * inputSize and count * outputSize), so this only reads the layer
+    void predictBatch(double[] in, int inFrom, int count, byte[] q, int[] acc, double[] out){
+        double inverse = 1.0 / inputScale;
+        for(int k=0; k<count*inputSize; k++){
+            q[k] = quantize(in[inFrom + k] * inverse);
+        }
+        KERNELS.matmulT(q, 0, count, w, 0, outputSize, inputSize, acc, 0);
+        for(int n=0; n<count; n++){
+            int row = n * outputSize;
+            for(int i=0; i<outputSize; i++){
+                out[row + i] = acc[row + i] * outputScales[i] + b[i];
+            }
+        }
+        activation.apply(out, out, 0, count, outputSize);
+    }
+
+    //nearest level, clipped to +-LEVELS: rint and the int clamp compile to a few plain instructions,
+    //Math.round and a double Math.min/max are branchy enough to cost more than the whole int8 matmul
+    private static byte quantize(double value){
+        int level = (int) Math.rint(value);
+        return (byte) Math.max(-LEVELS, Math.min(LEVELS, level));
+    }
+}
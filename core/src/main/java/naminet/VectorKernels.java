@@ -0,0 +1,356 @@
+//DenseKernels on the JDK Vector API, as wide as the CPU allows (needs --add-modules jdk.incubator.vector
+//to compile and run, DenseKernels falls back to the scalar loops without it)
+
+package naminet;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernels implements DenseKernels{
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    //int8: bytes are loaded as many lanes as the int vector has and widened to it (at least 8, the smallest byte vector is 64 bits)
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED.length() >= 8 ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> B = VectorSpecies.of(byte.class, VectorShape.forBitSize(I.length() * Byte.SIZE));
+
+    public double dot(double[] a, int aFrom, double[] b, int bFrom, int count){
+        DoubleVector acc0 = DoubleVector.zero(D);
+        DoubleVector acc1 = DoubleVector.zero(D);  //two chains so the fmas don't wait on each other
+        int lanes = D.length();
+        int k = 0;
+        for(; k <= count - 2 * lanes; k += 2 * lanes){
+            acc0 = DoubleVector.fromArray(D, a, aFrom + k).fma(DoubleVector.fromArray(D, b, bFrom + k), acc0);
+            acc1 = DoubleVector.fromArray(D, a, aFrom + k + lanes).fma(DoubleVector.fromArray(D, b, bFrom + k + lanes), acc1);
+        }
+        for(; k <= count - lanes; k += lanes){
+            acc0 = DoubleVector.fromArray(D, a, aFrom + k).fma(DoubleVector.fromArray(D, b, bFrom + k), acc0);
+        }
+        double sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for(; k<count; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    public void axpy(double alpha, double[] x, int xFrom, double[] y, int yFrom, int count){
+        DoubleVector a = DoubleVector.broadcast(D, alpha);
+        int k = 0;
+        for(int bound = D.loopBound(count); k < bound; k += D.length()){
+            DoubleVector vx = DoubleVector.fromArray(D, x, xFrom + k);
+            vx.fma(a, DoubleVector.fromArray(D, y, yFrom + k)).intoArray(y, yFrom + k);
+        }
+        for(; k<count; k++){
+            y[yFrom + k] += alpha * x[xFrom + k];
+        }
+    }
+
+    public float dot(float[] a, int aFrom, float[] b, int bFrom, int count){
+        FloatVector acc0 = FloatVector.zero(F);
+        FloatVector acc1 = FloatVector.zero(F);
+        int lanes = F.length();
+        int k = 0;
+        for(; k <= count - 2 * lanes; k += 2 * lanes){
+            acc0 = FloatVector.fromArray(F, a, aFrom + k).fma(FloatVector.fromArray(F, b, bFrom + k), acc0);
+            acc1 = FloatVector.fromArray(F, a, aFrom + k + lanes).fma(FloatVector.fromArray(F, b, bFrom + k + lanes), acc1);
+        }
+        for(; k <= count - lanes; k += lanes){
+            acc0 = FloatVector.fromArray(F, a, aFrom + k).fma(FloatVector.fromArray(F, b, bFrom + k), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for(; k<count; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    public void axpy(float alpha, float[] x, int xFrom, float[] y, int yFrom, int count){
+        FloatVector a = FloatVector.broadcast(F, alpha);
+        int k = 0;
+        for(int bound = F.loopBound(count); k < bound; k += F.length()){
+            FloatVector vx = FloatVector.fromArray(F, x, xFrom + k);
+            vx.fma(a, FloatVector.fromArray(F, y, yFrom + k)).intoArray(y, yFrom + k);
+        }
+        for(; k<count; k++){
+            y[yFrom + k] += alpha * x[xFrom + k];
+        }
+    }
+
+    //4 a rows x 4 b rows per block: 16 accumulators (sized for the 32 vector registers of AVX-512),
+    //every vector loaded feeds 4 fmas; leftover rows go through dot
+    public void matmulT(double[] a, int aFrom, int aRows, double[] b, int bFrom, int bRows, int len, double[] c, int cFrom){
+        int lanes = D.length();
+        int bound = D.loopBound(len);
+        int j = 0;
+        for(; j <= bRows - 4; j += 4){
+            int b0 = bFrom + j * len;
+            int b1 = b0 + len;
+            int b2 = b1 + len;
+            int b3 = b2 + len;
+            int r = 0;
+            for(; r <= aRows - 4; r += 4){
+                int a0 = aFrom + r * len;
+                int a1 = a0 + len;
+                int a2 = a1 + len;
+                int a3 = a2 + len;
+                DoubleVector c00 = DoubleVector.zero(D), c01 = DoubleVector.zero(D), c02 = DoubleVector.zero(D), c03 = DoubleVector.zero(D);
+                DoubleVector c10 = DoubleVector.zero(D), c11 = DoubleVector.zero(D), c12 = DoubleVector.zero(D), c13 = DoubleVector.zero(D);
+                DoubleVector c20 = DoubleVector.zero(D), c21 = DoubleVector.zero(D), c22 = DoubleVector.zero(D), c23 = DoubleVector.zero(D);
+                DoubleVector c30 = DoubleVector.zero(D), c31 = DoubleVector.zero(D), c32 = DoubleVector.zero(D), c33 = DoubleVector.zero(D);
+                for(int k=0; k<bound; k+=lanes){
+                    DoubleVector w0 = DoubleVector.fromArray(D, b, b0 + k);
+                    DoubleVector w1 = DoubleVector.fromArray(D, b, b1 + k);
+                    DoubleVector w2 = DoubleVector.fromArray(D, b, b2 + k);
+                    DoubleVector w3 = DoubleVector.fromArray(D, b, b3 + k);
+                    DoubleVector x = DoubleVector.fromArray(D, a, a0 + k);
+                    c00 = x.fma(w0, c00);
+                    c01 = x.fma(w1, c01);
+                    c02 = x.fma(w2, c02);
+                    c03 = x.fma(w3, c03);
+                    x = DoubleVector.fromArray(D, a, a1 + k);
+                    c10 = x.fma(w0, c10);
+                    c11 = x.fma(w1, c11);
+                    c12 = x.fma(w2, c12);
+                    c13 = x.fma(w3, c13);
+                    x = DoubleVector.fromArray(D, a, a2 + k);
+                    c20 = x.fma(w0, c20);
+                    c21 = x.fma(w1, c21);
+                    c22 = x.fma(w2, c22);
+                    c23 = x.fma(w3, c23);
+                    x = DoubleVector.fromArray(D, a, a3 + k);
+                    c30 = x.fma(w0, c30);
+                    c31 = x.fma(w1, c31);
+                    c32 = x.fma(w2, c32);
+                    c33 = x.fma(w3, c33);
+                }
+                int out = cFrom + r * bRows + j;
+                c[out] = c00.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b0, bound, len);
+                c[out + 1] = c01.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b1, bound, len);
+                c[out + 2] = c02.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b2, bound, len);
+                c[out + 3] = c03.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b3, bound, len);
+                out += bRows;
+                c[out] = c10.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b0, bound, len);
+                c[out + 1] = c11.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b1, bound, len);
+                c[out + 2] = c12.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b2, bound, len);
+                c[out + 3] = c13.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b3, bound, len);
+                out += bRows;
+                c[out] = c20.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b0, bound, len);
+                c[out + 1] = c21.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b1, bound, len);
+                c[out + 2] = c22.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b2, bound, len);
+                c[out + 3] = c23.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b3, bound, len);
+                out += bRows;
+                c[out] = c30.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b0, bound, len);
+                c[out + 1] = c31.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b1, bound, len);
+                c[out + 2] = c32.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b2, bound, len);
+                c[out + 3] = c33.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b3, bound, len);
+            }
+            for(; r<aRows; r++){
+                for(int q=0; q<4; q++){
+                    c[cFrom + r * bRows + j + q] = dot(a, aFrom + r * len, b, bFrom + (j + q) * len, len);
+                }
+            }
+        }
+        for(; j<bRows; j++){
+            for(int r=0; r<aRows; r++){
+                c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+            }
+        }
+    }
+
+    private static double tail(double[] a, int aFrom, double[] b, int bFrom, int from, int len){
+        double sum = 0.0;
+        for(int k=from; k<len; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    public void matmulT(float[] a, int aFrom, int aRows, float[] b, int bFrom, int bRows, int len, float[] c, int cFrom){
+        int lanes = F.length();
+        int bound = F.loopBound(len);
+        int j = 0;
+        for(; j <= bRows - 4; j += 4){
+            int b0 = bFrom + j * len;
+            int b1 = b0 + len;
+            int b2 = b1 + len;
+            int b3 = b2 + len;
+            int r = 0;
+            for(; r <= aRows - 4; r += 4){
+                int a0 = aFrom + r * len;
+                int a1 = a0 + len;
+                int a2 = a1 + len;
+                int a3 = a2 + len;
+                FloatVector c00 = FloatVector.zero(F), c01 = FloatVector.zero(F), c02 = FloatVector.zero(F), c03 = FloatVector.zero(F);
+                FloatVector c10 = FloatVector.zero(F), c11 = FloatVector.zero(F), c12 = FloatVector.zero(F), c13 = FloatVector.zero(F);
+                FloatVector c20 = FloatVector.zero(F), c21 = FloatVector.zero(F), c22 = FloatVector.zero(F), c23 = FloatVector.zero(F);
+                FloatVector c30 = FloatVector.zero(F), c31 = FloatVector.zero(F), c32 = FloatVector.zero(F), c33 = FloatVector.zero(F);
+                for(int k=0; k<bound; k+=lanes){
+                    FloatVector w0 = FloatVector.fromArray(F, b, b0 + k);
+                    FloatVector w1 = FloatVector.fromArray(F, b, b1 + k);
+                    FloatVector w2 = FloatVector.fromArray(F, b, b2 + k);
+                    FloatVector w3 = FloatVector.fromArray(F, b, b3 + k);
+                    FloatVector x = FloatVector.fromArray(F, a, a0 + k);
+                    c00 = x.fma(w0, c00);
+                    c01 = x.fma(w1, c01);
+                    c02 = x.fma(w2, c02);
+                    c03 = x.fma(w3, c03);
+                    x = FloatVector.fromArray(F, a, a1 + k);
+                    c10 = x.fma(w0, c10);
+                    c11 = x.fma(w1, c11);
+                    c12 = x.fma(w2, c12);
+                    c13 = x.fma(w3, c13);
+                    x = FloatVector.fromArray(F, a, a2 + k);
+                    c20 = x.fma(w0, c20);
+                    c21 = x.fma(w1, c21);
+                    c22 = x.fma(w2, c22);
+                    c23 = x.fma(w3, c23);
+                    x = FloatVector.fromArray(F, a, a3 + k);
+                    c30 = x.fma(w0, c30);
+                    c31 = x.fma(w1, c31);
+                    c32 = x.fma(w2, c32);
+                    c33 = x.fma(w3, c33);
+                }
+                int out = cFrom + r * bRows + j;
+                c[out] = c00.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b0, bound, len);
+                c[out + 1] = c01.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b1, bound, len);
+                c[out + 2] = c02.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b2, bound, len);
+                c[out + 3] = c03.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b3, bound, len);
+                out += bRows;
+                c[out] = c10.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b0, bound, len);
+                c[out + 1] = c11.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b1, bound, len);
+                c[out + 2] = c12.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b2, bound, len);
+                c[out + 3] = c13.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b3, bound, len);
+                out += bRows;
+                c[out] = c20.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b0, bound, len);
+                c[out + 1] = c21.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b1, bound, len);
+                c[out + 2] = c22.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b2, bound, len);
+                c[out + 3] = c23.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b3, bound, len);
+                out += bRows;
+                c[out] = c30.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b0, bound, len);
+                c[out + 1] = c31.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b1, bound, len);
+                c[out + 2] = c32.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b2, bound, len);
+                c[out + 3] = c33.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b3, bound, len);
+            }
+            for(; r<aRows; r++){
+                for(int q=0; q<4; q++){
+                    c[cFrom + r * bRows + j + q] = dot(a, aFrom + r * len, b, bFrom + (j + q) * len, len);
+                }
+            }
+        }
+        for(; j<bRows; j++){
+            for(int r=0; r<aRows; r++){
+                c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+            }
+        }
+    }
+
+    private static float tail(float[] a, int aFrom, float[] b, int bFrom, int from, int len){
+        float sum = 0f;
+        for(int k=from; k<len; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    //no int8 dot-product instruction behind the Vector API (JDK 17), so the bytes are widened to int lanes
+    //and multiplied there: half the lanes of a float op, but a quarter of the memory traffic of doubles
+    public int dot(byte[] a, int aFrom, byte[] b, int bFrom, int count){
+        IntVector acc0 = IntVector.zero(I);
+        IntVector acc1 = IntVector.zero(I);
+        int lanes = I.length();
+        int k = 0;
+        for(; k <= count - 2 * lanes; k += 2 * lanes){
+            acc0 = acc0.add(widen(a, aFrom + k).mul(widen(b, bFrom + k)));
+            acc1 = acc1.add(widen(a, aFrom + k + lanes).mul(widen(b, bFrom + k + lanes)));
+        }
+        for(; k <= count - lanes; k += lanes){
+            acc0 = acc0.add(widen(a, aFrom + k).mul(widen(b, bFrom + k)));
+        }
+        int sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for(; k<count; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    //4 a rows x 2 b rows per block: a 4x4 block like the double one spills (every product needs its operands
+    //widened first) and runs several times slower, this one keeps 8 accumulators plus the widened rows in registers
+    public void matmulT(byte[] a, int aFrom, int aRows, byte[] b, int bFrom, int bRows, int len, int[] c, int cFrom){
+        int lanes = I.length();
+        int bound = I.loopBound(len);
+        int j = 0;
+        for(; j <= bRows - 2; j += 2){
+            int b0 = bFrom + j * len;
+            int b1 = b0 + len;
+            int r = 0;
+            for(; r <= aRows - 4; r += 4){
+                int a0 = aFrom + r * len;
+                int a1 = a0 + len;
+                int a2 = a1 + len;
+                int a3 = a2 + len;
+                IntVector c00 = IntVector.zero(I), c01 = IntVector.zero(I);
+                IntVector c10 = IntVector.zero(I), c11 = IntVector.zero(I);
+                IntVector c20 = IntVector.zero(I), c21 = IntVector.zero(I);
+                IntVector c30 = IntVector.zero(I), c31 = IntVector.zero(I);
+                for(int k=0; k<bound; k+=lanes){
+                    IntVector w0 = widen(b, b0 + k);
+                    IntVector w1 = widen(b, b1 + k);
+                    IntVector x = widen(a, a0 + k);
+                    c00 = c00.add(x.mul(w0));
+                    c01 = c01.add(x.mul(w1));
+                    x = widen(a, a1 + k);
+                    c10 = c10.add(x.mul(w0));
+                    c11 = c11.add(x.mul(w1));
+                    x = widen(a, a2 + k);
+                    c20 = c20.add(x.mul(w0));
+                    c21 = c21.add(x.mul(w1));
+                    x = widen(a, a3 + k);
+                    c30 = c30.add(x.mul(w0));
+                    c31 = c31.add(x.mul(w1));
+                }
+                int out = cFrom + r * bRows + j;
+                c[out] = c00.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b0, bound, len);
+                c[out + 1] = c01.reduceLanes(VectorOperators.ADD) + tail(a, a0, b, b1, bound, len);
+                out += bRows;
+                c[out] = c10.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b0, bound, len);
+                c[out + 1] = c11.reduceLanes(VectorOperators.ADD) + tail(a, a1, b, b1, bound, len);
+                out += bRows;
+                c[out] = c20.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b0, bound, len);
+                c[out + 1] = c21.reduceLanes(VectorOperators.ADD) + tail(a, a2, b, b1, bound, len);
+                out += bRows;
+                c[out] = c30.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b0, bound, len);
+                c[out + 1] = c31.reduceLanes(VectorOperators.ADD) + tail(a, a3, b, b1, bound, len);
+            }
+            for(; r<aRows; r++){
+                c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, b0, len);
+                c[cFrom + r * bRows + j + 1] = dot(a, aFrom + r * len, b, b1, len);
+            }
+        }
+        for(; j<bRows; j++){
+            for(int r=0; r<aRows; r++){
+                c[cFrom + r * bRows + j] = dot(a, aFrom + r * len, b, bFrom + j * len, len);
+            }
+        }
+    }
+
+    //I.length() bytes from a[from], sign-extended to ints
+    private static IntVector widen(byte[] a, int from){
+        return (IntVector) ByteVector.fromArray(B, a, from).castShape(I, 0);
+    }
+
+    private static int tail(byte[] a, int aFrom, byte[] b, int bFrom, int from, int len){
+        int sum = 0;
+        for(int k=from; k<len; k++){
+            sum += a[aFrom + k] * b[bFrom + k];
+        }
+        return sum;
+    }
+
+    public String name(){
+        return "vector (" + D.length() + " doubles / " + F.length() + " floats per op)";
+    }
+}
@@ -0,0 +1,111 @@
+//float32 (singlePrecision) against double on the same seed: the same predictions before training, the same step
+//after one batch, and the same accuracy after a few epochs on a small synthetic 10-class problem
+//PrecisionCheck in Training does the full MNIST comparison
+
+package naminet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PrecisionParityTest{
+    private static final int[] TOPOLOGY = {64, 32, 16, 10};
+    private static final double[] NO_DROPOUT = {0.0, 0.0, 0.0};
+    private static final long SEED = 42;
+    private static final int BATCH = 32;
+
+    @Test
+    void sameSeedGivesSamePredictions(){
+        NeuralNetwork naminet = network(NO_DROPOUT, false);
+        NeuralNetwork single = network(NO_DROPOUT, true);
+        double[][] inputs = samples(new SplittableRandom(1), 64, new double[64][10]);
+        assertClose(naminet, single, inputs, 1e-5);
+    }
+
+    //one trainBatch, so the gradients and the optimizer step have to agree too, not only the forward pass
+    @Test
+    void oneTrainingStepAgrees(){
+        NeuralNetwork naminet = network(NO_DROPOUT, false);
+        NeuralNetwork single = network(NO_DROPOUT, true);
+        double[][] targets = new double[BATCH][10];
+        double[][] inputs = samples(new SplittableRandom(2), BATCH, targets);
+        naminet.trainBatch(inputs, targets, 0.01);
+        single.trainBatch(inputs, targets, 0.01);
+        assertClose(naminet, single, inputs, 1e-4);
+    }
+
+    @Test
+    void trainedAccuracyMatches(){
+        int trainSize = 2048, testSize = 1000, epochs = 3;
+        SplittableRandom rand = new SplittableRandom(3);
+        double[][] trainTargets = new double[trainSize][10];
+        double[][] trainInputs = samples(rand, trainSize, trainTargets);
+        double[][] testTargets = new double[testSize][10];
+        double[][] testInputs = samples(rand, testSize, testTargets);
+
+        double[] accuracy = new double[2];
+        for(int p=0; p<2; p++){
+            NeuralNetwork naminet = network(new double[]{0.1, 0.05, 0.0}, p == 1);
+            double[][] batchInputs = new double[BATCH][];
+            double[][] batchTargets = new double[BATCH][];
+            for(int epoch=0; epoch<epochs; epoch++){
+                for(int from=0; from+BATCH<=trainSize; from+=BATCH){
+                    System.arraycopy(trainInputs, from, batchInputs, 0, BATCH);
+                    System.arraycopy(trainTargets, from, batchTargets, 0, BATCH);
+                    naminet.trainBatch(batchInputs, batchTargets, 0.002);
+                }
+            }
+            int correct = 0;
+            for(int i=0; i<testSize; i++){
+                if(argMax(naminet.predict(testInputs[i])) == argMax(testTargets[i])) correct++;
+            }
+            accuracy[p] = 100.0 * correct / testSize;
+        }
+        assertTrue(accuracy[0] > 50.0, "double didn't learn the problem: " + accuracy[0] + "%");
+        assertEquals(accuracy[0], accuracy[1], 1.0, "float vs double held-out accuracy");
+    }
+
+    private static NeuralNetwork network(double[] dropoutRates, boolean singlePrecision){
+        return new NeuralNetwork(TOPOLOGY, dropoutRates, Optimizer.Adam::new, SEED, singlePrecision);
+    }
+
+    //class c is a fixed pattern (seeded apart from the samples) plus enough noise that the classes overlap
+    private static double[][] samples(SplittableRandom rand, int count, double[][] targets){
+        SplittableRandom patterns = new SplittableRandom(7);
+        double[][] centers = new double[10][TOPOLOGY[0]];
+        for(double[] center : centers){
+            for(int j=0; j<center.length; j++){
+                center[j] = patterns.nextDouble();
+            }
+        }
+        double[][] inputs = new double[count][TOPOLOGY[0]];
+        for(int n=0; n<count; n++){
+            int c = rand.nextInt(10);
+            targets[n][c] = 1.0;
+            for(int j=0; j<TOPOLOGY[0]; j++){
+                inputs[n][j] = centers[c][j] + rand.nextGaussian() * 0.6;
+            }
+        }
+        return inputs;
+    }
+
+    private static void assertClose(NeuralNetwork expected, NeuralNetwork actual, double[][] inputs, double tolerance){
+        for(double[] input : inputs){
+            double[] yp = expected.predict(input);
+            double[] yq = actual.predict(input);
+            for(int c=0; c<yp.length; c++){
+                assertEquals(yp[c], yq[c], tolerance, "probability of class " + c);
+            }
+        }
+    }
+
+    private static int argMax(double[] values){
+        int best = 0;
+        for(int i=1; i<values.length; i++){
+            if(values[i] > values[best]) best = i;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,187 @@
+//headless NamiNet: the model behind a small HTTP server, requests micro-batched (see MicroBatcher)
+//  java -jar target/naminet-server-1.0-SNAPSHOT.jar [model] [port] [windowMicros] [maxBatch]
+//defaults: ../Interface/naminet_model.bin, 8080, 1000 us, 64
+//
+//  POST /predict   784 pixels, either 784 raw bytes (Content-Type: application/octet-stream, 0-255)
+//                  or text numbers in [0, 1] separated by commas/whitespace (a JSON array works too)
+//                  -> {"label":7,"probabilities":[...]}, 413 for a body longer than that can be
+//                  (784 bytes raw, 32 bytes a pixel as text)
+//  GET  /stats     {"requests":...,"batches":...,"meanBatch":...}
+//  GET  /health    ok
+
+package naminet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class InferenceServer{
+    private static final long TIMEOUT_SECONDS = 10;     //a request waiting longer than this for its batch gets a 503
+    private static final int TEXT_BYTES_PER_PIXEL = 32;     //"0.0039215686274509803, " with room to spare
+
+    private final InferenceModel model;
+    private final MicroBatcher batcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    InferenceServer(InferenceModel model, int port, long windowMicros, int maxBatch) throws IOException{
+        this.model = model;
+        this.batcher = new MicroBatcher(model, windowMicros, maxBatch);
+        this.executor = requestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/predict", this::predict);
+        server.createContext("/stats", this::stats);
+        server.createContext("/health", exchange -> send(exchange, 200, "text/plain", "ok"));
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException{
+        String path = args.length > 0 ? args[0] : "../Interface/naminet_model.bin";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        long windowMicros = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int maxBatch = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        InferenceModel model = ModelSaver.loadInferenceModel(path);     //int8 models (Quantizer) too
+        if(model == null) return;
+        InferenceServer server = new InferenceServer(model, port, windowMicros, maxBatch);
+        server.start();
+        System.out.println("NamiNet serving on port " + server.port() + " (window " + windowMicros + " us, batches of up to " + maxBatch
+                           + (model.isQuantized() ? ", int8" : "") + ", kernels: " + DenseKernels.INSTANCE.name() + ")");
+    }
+
+    //one thread per request, they spend their time waiting on the batcher: virtual threads on JDK 21+,
+    //a cached pool of platform threads before that
+    static ExecutorService requestExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }catch(ReflectiveOperationException e){
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    void start(){
+        server.start();
+    }
+
+    int port(){
+        return server.getAddress().getPort();
+    }
+
+    void stop(){
+        server.stop(0);
+        batcher.close();
+        executor.shutdown();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException{
+        if(!exchange.getRequestMethod().equals("POST")){
+            send(exchange, 405, "text/plain", "POST 784 pixels to /predict");
+            return;
+        }
+        int inputSize = model.inputSize();
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean raw = type != null && type.startsWith("application/octet-stream");
+        //read one byte past the limit to tell a full body from a longer one, never the whole thing
+        int limit = raw ? inputSize : inputSize * TEXT_BYTES_PER_PIXEL;
+        byte[] body = exchange.getRequestBody().readNBytes(limit + 1);
+        if(body.length > limit){
+            send(exchange, 413, "text/plain", "body over " + limit + " bytes");
+            return;
+        }
+        double[] pixels;
+        try{
+            pixels = raw ? fromBytes(body) : fromText(body, inputSize);
+            if(pixels.length != inputSize){
+                throw new IllegalArgumentException("expected " + inputSize + " pixels, got " + pixels.length);
+            }
+        }catch(IllegalArgumentException e){    //NumberFormatException included
+            send(exchange, 400, "text/plain", e.getMessage());
+            return;
+        }
+
+        MicroBatcher.Prediction prediction;
+        try{
+            prediction = batcher.submit(pixels).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }catch(ExecutionException e){
+            boolean busy = e.getCause() instanceof RejectedExecutionException;
+            send(exchange, busy ? 503 : 500, "text/plain", String.valueOf(e.getCause().getMessage()));
+            return;
+        }catch(TimeoutException e){
+            send(exchange, 503, "text/plain", "timed out");
+            return;
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "text/plain", "interrupted");
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(256).append("{\"label\":").append(prediction.label).append(",\"probabilities\":[");
+        for(int i=0; i<prediction.probabilities.length; i++){
+            if(i > 0) json.append(',');
+            json.append(prediction.probabilities[i]);
+        }
+        send(exchange, 200, "application/json", json.append("]}").toString());
+    }
+
+    private void stats(HttpExchange exchange) throws IOException{
+        long requests = batcher.requests();
+        long batches = batcher.batches();
+        double mean = batches == 0 ? 0.0 : (double) requests / batches;
+        send(exchange, 200, "application/json",
+             "{\"requests\":" + requests + ",\"batches\":" + batches + ",\"meanBatch\":" + mean + "}");
+    }
+
+    //raw grayscale bytes, 0-255 like the MNIST files
+    static double[] fromBytes(byte[] body){
+        double[] pixels = new double[body.length];
+        for(int i=0; i<body.length; i++){
+            pixels[i] = (body[i] & 0xFF) / 255.0;
+        }
+        return pixels;
+    }
+
+    //numbers separated by anything that can't be part of one (commas, whitespace, brackets), at most max of them, each in [0, 1]
+    static double[] fromText(byte[] body, int max){
+        String text = new String(body, StandardCharsets.US_ASCII);
+        double[] pixels = new double[max];
+        int count = 0;
+        int i = 0;
+        while(i < text.length()){
+            while(i < text.length() && !isNumberChar(text.charAt(i))) i++;
+            int start = i;
+            while(i < text.length() && isNumberChar(text.charAt(i))) i++;
+            if(i > start){
+                if(count == max) throw new IllegalArgumentException("expected " + max + " pixels, got more");
+                double pixel = Double.parseDouble(text.substring(start, i));
+                if(!(pixel >= 0 && pixel <= 1)){    //NaN and 1e999 (infinity) fail this too
+                    throw new IllegalArgumentException("pixel " + count + " is " + text.substring(start, i) + ", not in [0, 1]");
+                }
+                pixels[count++] = pixel;
+            }
+        }
+        return Arrays.copyOf(pixels, count);
+    }
+
+    private static boolean isNumberChar(char c){
+        return (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E';
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+//closed-loop load for InferenceServer: every client sends a digit, waits for the answer, sends the next
+//  java -cp "target/classes:target/lib/*" naminet.LoadGenerator [url] [clients] [seconds] [warmupSeconds]
+//defaults: http://localhost:8080, 32 clients, 10 s after 3 s of warm-up
+//prints throughput, latency percentiles and the server's mean batch size over the measured part
+
+package naminet;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LoadGenerator{
+    private static final int PAYLOADS = 256;    //different digits to cycle through
+
+    //one client's latencies (nanoseconds) of the measured part, and its failed requests
+    private static final class Client{
+        long[] latencies = new long[1 << 12];
+        int count;
+        int errors;
+
+        void record(long nanos){
+            if(count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception{
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI predict = URI.create(url + "/predict");
+        URI stats = URI.create(url + "/stats");
+        byte[][] payloads = payloads(PAYLOADS, new SplittableRandom(42));
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup * 1_000_000_000L;
+        long end = measureFrom + seconds * 1_000_000_000L;
+        long[] before = new long[2];
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Client>> futures = new ArrayList<>();
+        for(int c=0; c<clients; c++){
+            int offset = c * 7;
+            futures.add(pool.submit(() -> {
+                Client client = new Client();
+                for(int n=offset; ; n++){
+                    long sent = System.nanoTime();
+                    if(sent >= end) break;
+                    HttpRequest request = HttpRequest.newBuilder(predict)
+                                                     .header("Content-Type", "application/octet-stream")
+                                                     .POST(HttpRequest.BodyPublishers.ofByteArray(payloads[n % PAYLOADS]))
+                                                     .build();
+                    boolean ok;
+                    try{
+                        ok = http.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+                    }catch(IOException e){
+                        ok = false;
+                    }
+                    long done = System.nanoTime();
+                    if(sent < measureFrom) continue;
+                    if(ok) client.record(done - sent);
+                    else client.errors++;
+                }
+                return client;
+            }));
+        }
+
+        Thread.sleep(Math.max(0, (measureFrom - System.nanoTime()) / 1_000_000));
+        readStats(http, stats, before);
+
+        long[] all = new long[0];
+        int errors = 0;
+        for(Future<Client> future : futures){
+            Client client = future.get();
+            int from = all.length;
+            all = Arrays.copyOf(all, from + client.count);
+            System.arraycopy(client.latencies, 0, all, from, client.count);
+            errors += client.errors;
+        }
+        pool.shutdown();
+        long[] after = new long[2];
+        readStats(http, stats, after);
+
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d s: %d requests, %d errors, %.0f requests/s%n",
+                          clients, seconds, all.length, errors, all.length / (double) seconds);
+        if(all.length > 0){
+            System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                              percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                              all[all.length - 1] / 1e6);
+        }
+        long batches = after[1] - before[1];
+        if(batches > 0){
+            System.out.printf("server: %d batches, %.1f requests per batch%n", batches, (after[0] - before[0]) / (double) batches);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p){
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    //requests and batches from /stats into out, left as is when the server doesn't answer
+    private static void readStats(HttpClient http, URI stats, long[] out){
+        try{
+            String body = http.send(HttpRequest.newBuilder(stats).build(), HttpResponse.BodyHandlers.ofString()).body();
+            out[0] = field(body, "requests");
+            out[1] = field(body, "batches");
+        }catch(IOException | InterruptedException | RuntimeException e){
+            System.out.println("no stats: " + e);
+        }
+    }
+
+    private static long field(String json, String name){
+        int at = json.indexOf("\"" + name + "\":") + name.length() + 3;
+        int to = at;
+        while(to < json.length() && Character.isDigit(json.charAt(to))) to++;
+        return Long.parseLong(json.substring(at, to));
+    }
+
+    //a blob of ink on a dark background as raw 0-255 pixels, roughly how a digit's values are spread
+    private static byte[][] payloads(int count, SplittableRandom rand){
+        byte[][] payloads = new byte[count][784];
+        for(byte[] image : payloads){
+            int cx = 8 + rand.nextInt(12), cy = 8 + rand.nextInt(12);
+            for(int y=0; y<28; y++){
+                for(int x=0; x<28; x++){
+                    double d = Math.hypot(x - cx, y - cy);
+                    double v = d < 6 ? Math.min(1.0, (6 - d) / 3 + rand.nextDouble() * 0.1) : 0.0;
+                    image[y * 28 + x] = (byte) Math.round(v * 255);
+                }
+            }
+        }
+        return payloads;
+    }
+}
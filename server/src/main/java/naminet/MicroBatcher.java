@@ -0,0 +1,151 @@
+//coalesces single predictions coming from many request threads into InferenceModel.predictBatch calls:
+//the first request to arrive opens a window, whatever else comes in within it (up to maxBatch) is scored with it
+//one worker thread runs the batches, the request threads only wait on their own future
+
+package naminet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+final class MicroBatcher implements AutoCloseable{
+    private static final int QUEUE_SIZE = 4096;     //requests waiting beyond this are turned away instead of piling up
+
+    private final InferenceModel model;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread worker;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean running = true;
+
+    //what a request gets back
+    static final class Prediction{
+        final int label;
+        final double[] probabilities;
+
+        Prediction(int label, double[] probabilities){
+            this.label = label;
+            this.probabilities = probabilities;
+        }
+    }
+
+    private static final class Pending{
+        final double[] pixels;
+        final CompletableFuture<Prediction> result = new CompletableFuture<>();
+
+        Pending(double[] pixels){
+            this.pixels = pixels;
+        }
+    }
+
+    //windowMicros 0 scores whatever is already queued right away, without waiting for more
+    MicroBatcher(InferenceModel model, long windowMicros, int maxBatch){
+        this.model = model;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.worker = new Thread(this::run, "naminet-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    //pixels must hold model.inputSize() values; fails right away with RejectedExecutionException when the queue is full
+    CompletableFuture<Prediction> submit(double[] pixels){
+        if(pixels.length != model.inputSize()){
+            throw new IllegalArgumentException("expected " + model.inputSize() + " pixels, got " + pixels.length);
+        }
+        Pending pending = new Pending(pixels);
+        if(!running || !queue.offer(pending)){
+            pending.result.completeExceptionally(new RejectedExecutionException("server busy"));
+        }else if(!running && queue.remove(pending)){
+            //close() came in between the check and the offer and may already have drained the queue
+            pending.result.completeExceptionally(new RejectedExecutionException("server stopped"));
+        }
+        return pending.result;
+    }
+
+    long requests(){
+        return requests.sum();
+    }
+
+    long batches(){
+        return batches.sum();
+    }
+
+    private void run(){
+        int inputSize = model.inputSize();
+        double[] flat = new double[maxBatch * inputSize];   //reused by every batch
+        InferenceModel.Workspace workspace = model.newWorkspace();  //so is this, the worker is its only user
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while(running){
+            try{
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while(batch.size() < maxBatch){
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if(next == null) break;
+                    batch.add(next);
+                }
+            }catch(InterruptedException e){
+                //close(): what was already taken for this batch won't be scored either
+                reject(batch);
+                break;
+            }
+
+            int count = batch.size();
+            try{
+                for(int n=0; n<count; n++){
+                    System.arraycopy(batch.get(n).pixels, 0, flat, n * inputSize, inputSize);
+                }
+                Predictions predictions = model.predictBatch(flat, count, workspace);
+                for(int n=0; n<count; n++){
+                    batch.get(n).result.complete(new Prediction(predictions.label(n), predictions.probabilities(n)));
+                }
+            }catch(Throwable e){
+                //errors too: a worker that died here would leave every later request waiting forever
+                for(Pending pending : batch){
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            requests.add(count);
+            batches.increment();
+            batch.clear();
+        }
+
+        rejectQueued();
+    }
+
+    //whatever is still queued won't be scored anymore
+    private void rejectQueued(){
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        reject(left);
+    }
+
+    private static void reject(List<Pending> pendings){
+        for(Pending pending : pendings){
+            pending.result.completeExceptionally(new RejectedExecutionException("server stopped"));
+        }
+    }
+
+    @Override
+    public void close(){
+        running = false;
+        worker.interrupt();
+        try{
+            worker.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        rejectQueued();     //a submit that got past its running check before the worker stopped
+    }
+}